@@ -0,0 +1,60 @@
+package templedf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of a tick with a large ammo pool that's mostly free, and of spawning and despawning
+ * a piece of ammo.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AmmoPoolBenchmark {
+    @Param({"100", "1000"})
+    public int active;
+    private Engine engine;
+    private AmmoPool pool;
+    private final InputFrame input = new InputFrame(2);
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        engine = new Engine(42L, active, new CollisionWorld(Engine.CELL_SIZE), 10000);
+        pool = engine.getAmmoPool();
+    }
+
+    @Benchmark
+    public long tick() {
+        engine.tick(input);
+
+        if (engine.isRoundOver()) {
+            engine.restart();
+        }
+
+        return engine.getTick();
+    }
+
+    @Benchmark
+    public int spawnAndDespawn() {
+        next = (next + 1) % pool.size();
+        pool.despawn(engine.getAmmo()[next]);
+        pool.spawn(next, next);
+
+        return pool.size();
+    }
+}
@@ -0,0 +1,118 @@
+package templedf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The game's drag model over a batch of sprites, through each of the forms of
+ * {@link DragModel}, and through the default batch form of a model that only has the
+ * per-sprite forms. The velocities are restored before every call so that the sprites never
+ * come to rest.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DragBenchmark {
+    @Param({"1", "100", "10000"})
+    public int sprites;
+    private DragModel drag;
+    // The same model with only the per-sprite forms, so batches take the default dragAll
+    private DragModel perSprite;
+    private float[] x;
+    private float[] y;
+    private float[] xVel;
+    private float[] yVel;
+    private float[] initialXVel;
+    private float[] initialYVel;
+    private final float[] out = new float[2];
+
+    @Setup
+    public void setup() {
+        final Random rand = new Random(0L);
+
+        drag = new Engine(0L);
+        perSprite = new DragModel() {
+            @Override
+            public float[] drag(int x, int y, float xVel, float yVel) {
+                return drag.drag(x, y, xVel, yVel);
+            }
+
+            @Override
+            public void drag(int x, int y, float xVel, float yVel, float[] out) {
+                drag.drag(x, y, xVel, yVel, out);
+            }
+        };
+        x = new float[sprites];
+        y = new float[sprites];
+        xVel = new float[sprites];
+        yVel = new float[sprites];
+        initialXVel = new float[sprites];
+        initialYVel = new float[sprites];
+
+        for (int i = 0; i < sprites; i++) {
+            x[i] = rand.nextInt(Engine.WIDTH);
+            y[i] = rand.nextInt(Engine.HEIGHT);
+            // A quarter of the sprites move along one axis only, which takes the other branch
+            initialXVel[i] = rand.nextInt(4) == 0 ? 0 : rand.nextFloat() * 40 - 20;
+            initialYVel[i] = rand.nextFloat() * 40 - 20;
+        }
+    }
+
+    @Benchmark
+    public float legacy() {
+        float sum = 0;
+
+        for (int i = 0; i < sprites; i++) {
+            final float[] d = drag.drag((int)x[i], (int)y[i], initialXVel[i], initialYVel[i]);
+
+            sum += d[0] + d[1];
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    public float out() {
+        float sum = 0;
+
+        for (int i = 0; i < sprites; i++) {
+            drag.drag((int)x[i], (int)y[i], initialXVel[i], initialYVel[i], out);
+            sum += out[0] + out[1];
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    public float[] dragAll() {
+        System.arraycopy(initialXVel, 0, xVel, 0, sprites);
+        System.arraycopy(initialYVel, 0, yVel, 0, sprites);
+        drag.dragAll(x, y, xVel, yVel, 0, sprites, out);
+
+        return xVel;
+    }
+
+    @Benchmark
+    public float[] defaultDragAll() {
+        System.arraycopy(initialXVel, 0, xVel, 0, sprites);
+        System.arraycopy(initialYVel, 0, yVel, 0, sprites);
+        perSprite.dragAll(x, y, xVel, yVel, 0, sprites, out);
+
+        return xVel;
+    }
+}
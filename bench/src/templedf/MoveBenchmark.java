@@ -0,0 +1,60 @@
+package templedf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moving a single piece of ammo and a single player on their own. Whenever one comes to rest it
+ * is set moving again, so the ammo bounces off the walls and the player runs into them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveBenchmark {
+    private Ammo ammo;
+    private Player player;
+
+    @Setup
+    public void setup() {
+        final Engine engine = new Engine(0L);
+
+        // Sprites from a new engine share its world, so build standalone ones
+        ammo = new Ammo(400, 400, Engine.AMMO_SIZE, Shapes.BOUNDS, engine);
+        player = new Player(400, 400, Engine.PLAYER_SIZE, Shapes.BOUNDS, engine, java.awt.Color.BLUE);
+    }
+
+    @Benchmark
+    public int ammoMove() {
+        if (!ammo.isLive()) {
+            ammo.shoot(27.5f, -31.25f);
+        }
+
+        ammo.move();
+
+        return ammo.getX();
+    }
+
+    @Benchmark
+    public int playerMove() {
+        if ((player.getXVelocity() == 0) && (player.getYVelocity() == 0)) {
+            player.incrementVelocity(player.getX() < 400 ? 12f : -12f, player.getY() < 400 ? 9f : -9f);
+        }
+
+        player.move();
+
+        return player.getX();
+    }
+}
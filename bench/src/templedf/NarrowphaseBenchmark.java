@@ -0,0 +1,62 @@
+package templedf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One player tested against a batch of ammo, with the scalar and the Vector API narrowphase.
+ * About half of the candidates are hits.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class NarrowphaseBenchmark {
+    @Param({"16", "256", "4096"})
+    public int candidates;
+    @Param({"true", "false"})
+    public boolean vector;
+    private Narrowphase narrowphase;
+    private Player player;
+    private Ammo ammo;
+    private float[] x;
+    private float[] y;
+    private boolean[] hits;
+
+    @Setup
+    public void setup() {
+        final Random rand = new Random(0L);
+        final Engine engine = new Engine(0L);
+
+        narrowphase = vector ? Narrowphase.get() : new Narrowphase();
+        player = engine.getPlayers()[0];
+        ammo = engine.getAmmo()[0];
+        x = new float[candidates];
+        y = new float[candidates];
+        hits = new boolean[candidates];
+
+        for (int i = 0; i < candidates; i++) {
+            x[i] = player.getX() + rand.nextInt(-25, 26);
+            y[i] = player.getY() + rand.nextInt(-25, 26);
+        }
+    }
+
+    @Benchmark
+    public int overlaps() {
+        return narrowphase.overlaps(player.shape, player.getX(), player.getY(), ammo.shape, x, y, candidates, hits);
+    }
+}
@@ -0,0 +1,87 @@
+package templedf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of writing and reading one netplay packet, with a window of unacknowledged inputs as
+ * long as the input delay. The inputs change every few ticks, like a player's do, so a longer
+ * window means more runs in the packet, and every read stores the whole window.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetplayBenchmark {
+    @Param({"2", "8", "32"})
+    public int delay;
+    private Netplay sender;
+    private Netplay receiver;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+
+    @Setup
+    public void setup() throws IOException {
+        final InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 9);
+
+        sender = new Netplay(DatagramChannel.open(), address, 0, delay);
+        receiver = new Netplay(DatagramChannel.open(), address, 1, delay);
+
+        final Random rand = new Random(42L);
+        byte input = 0;
+        int hold = 0;
+
+        for (int t = 0; t < delay; t++) {
+            if (hold-- <= 0) {
+                input = (byte)(rand.nextInt(3) | (rand.nextInt(3) << 2) | (rand.nextInt(4) == 0 ? 0x10 : 0));
+                hold = rand.nextInt(4);
+            }
+
+            sender.setLocalInput(t, input);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        sender.close();
+        receiver.close();
+    }
+
+    @Benchmark
+    public int write() {
+        buffer.clear();
+        sender.writePacket(buffer);
+
+        return buffer.position();
+    }
+
+    @Benchmark
+    public int writeAndRead() throws IOException {
+        buffer.clear();
+        sender.writePacket(buffer);
+        buffer.flip();
+        receiver.forgetRemoteInputs();
+        receiver.readPacket(buffer);
+
+        return buffer.position();
+    }
+}
@@ -0,0 +1,48 @@
+package templedf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pairwise collision tests between two polygons through {@link Sprite#intersects(Sprite)}. The
+ * misses are far enough apart for the bounding boxes to reject them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class OverlapBenchmark {
+    private static final int RADIUS = 12;
+    @Param({"4", "8", "16"})
+    public int vertices;
+    @Param({"true", "false"})
+    public boolean hit;
+    private Sprite a;
+    private Sprite b;
+
+    @Setup
+    public void setup() {
+        final DragModel drag = new Engine(0L);
+
+        a = Shapes.sprite(400, 400, Shapes.polygon(vertices, RADIUS), drag);
+        b = Shapes.sprite(hit ? 410 : 430, 400, Shapes.polygon(vertices, RADIUS), drag);
+    }
+
+    @Benchmark
+    public boolean intersects() {
+        return a.intersects(b);
+    }
+}
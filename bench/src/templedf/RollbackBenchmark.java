@@ -0,0 +1,62 @@
+package templedf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of saving and restoring the default world, and of rolling back ten ticks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RollbackBenchmark {
+    private Engine engine;
+    private ByteBuffer buffer;
+    private Rollback rollback;
+
+    @Setup
+    public void setup() {
+        final InputFrame input = new InputFrame(2);
+
+        engine = new Engine(42L);
+        buffer = ByteBuffer.allocate(engine.getStateSize());
+        rollback = new Rollback(engine, 64);
+        input.set(0, (byte)0x16);
+        input.set(1, (byte)0x04);
+
+        for (int i = 0; i < 100; i++) {
+            rollback.tick(input);
+        }
+    }
+
+    @Benchmark
+    public int saveAndRestore() {
+        buffer.clear();
+        engine.save(buffer);
+        buffer.flip();
+        engine.restore(buffer);
+
+        return buffer.position();
+    }
+
+    @Benchmark
+    public long rollback() {
+        rollback.rollback(rollback.getTick() - 10);
+
+        return engine.getTick();
+    }
+}
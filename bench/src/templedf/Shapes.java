@@ -0,0 +1,41 @@
+package templedf;
+
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+
+/**
+ * Helpers for building sprites of arbitrary shape in the benchmarks.
+ */
+final class Shapes {
+    static final Rectangle BOUNDS = new Rectangle(0, 0, Engine.WIDTH, Engine.HEIGHT);
+
+    private Shapes() {
+    }
+
+    /**
+     * Build a regular polygon centered on the origin.
+     * @param vertices the number of vertices
+     * @param radius the distance from the center to each vertex
+     * @return the vertices
+     */
+    static Point[] polygon(int vertices, int radius) {
+        Point[] points = new Point[vertices];
+
+        for (int i = 0; i < vertices; i++) {
+            final double angle = 2 * Math.PI * i / vertices;
+
+            points[i] = new Point((int)Math.round(radius * Math.cos(angle)), (int)Math.round(radius * Math.sin(angle)));
+        }
+
+        return points;
+    }
+
+    static Sprite sprite(int x, int y, Point[] vertices, DragModel drag) {
+        return new Sprite(x, y, vertices, BOUNDS, drag) {
+            @Override
+            public void paint(Graphics g) {
+            }
+        };
+    }
+}
@@ -0,0 +1,68 @@
+package templedf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full engine ticks with two players and enough ammo to make up the sprite count. The players
+ * sweep back and forth across the arena, picking up ammo and shooting it, and a new round
+ * starts whenever one of them is hit. The broadphase is either the spatial hash or sweep and
+ * prune.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class TickBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int sprites;
+    @Param({"grid", "sap"})
+    public String broadphase;
+    private Engine engine;
+    private final Input input = new Input() {
+        @Override
+        public int getXDir(int player) {
+            return (engine.getTick() / 200) % 2 == player ? 1 : -1;
+        }
+
+        @Override
+        public int getYDir(int player) {
+            return (int)(engine.getTick() / 70 % 3) - 1;
+        }
+
+        @Override
+        public boolean isShooting(int player) {
+            return engine.getTick() % 25 == 0;
+        }
+    };
+
+    @Setup
+    public void setup() {
+        engine = new Engine(0L, sprites - 2,
+                broadphase.equals("sap") ? new SweepAndPrune() : new CollisionWorld(Engine.CELL_SIZE));
+    }
+
+    @Benchmark
+    public long tick() {
+        if (engine.isRoundOver()) {
+            engine.restart();
+        }
+
+        engine.tick(input);
+
+        return engine.getTick();
+    }
+}
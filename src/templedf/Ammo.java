@@ -6,6 +6,8 @@ import java.awt.Point;
 import java.awt.Rectangle;
 
 public class Ammo extends Sprite {
+    // Every ammo sprite is gray, so they all share one cache
+    private static final SpriteImages IMAGES = new SpriteImages(Color.GRAY);
     private Player shooter = null;
     private boolean live = false;
 
@@ -26,8 +28,7 @@ public class Ammo extends Sprite {
     }
 
     public void shoot(float xVel, float yVel) {
-        this.xVelocity = xVel;
-        this.yVelocity = yVel;
+        setVelocity(xVel, yVel);
         live = true;
     }
 
@@ -35,6 +36,10 @@ public class Ammo extends Sprite {
         this.shooter = shooter;
     }
 
+    void setLive(boolean live) {
+        this.live = live;
+    }
+
     public Player getShooter() {
         return shooter;
     }
@@ -44,51 +49,23 @@ public class Ammo extends Sprite {
     }
 
     @Override
-    public void move() {
-        float[] drag = this.drag.drag(getX(), getY(), xVelocity, yVelocity);
-
-        xVelocity += drag[0];
-        yVelocity += drag[1];
-        int x = getX() + (int)xVelocity;
-        int y = getY() + (int)yVelocity;
-
-        if (x < bounds.x) {
-            x = bounds.x - x;
-            xVelocity = -xVelocity;
-        } else if (x > bounds.width) {
-            x = bounds.width - (x - bounds.width);
-            xVelocity = -xVelocity;
-        }
-
-        if (y < bounds.y) {
-            y = bounds.y - y;
-            yVelocity = -yVelocity;
-        } else if (y > bounds.height) {
-            y = bounds.height - (y - bounds.height);
-            yVelocity = -yVelocity;
-        }
-
-        setX(x);
-        setY(y);
-        regionCache = null; // Invalid region cache
+    protected boolean bounces() {
+        return true;
+    }
 
-        if ((xVelocity == 0) && (yVelocity == 0)) {
-            shooter = null;
-            live = false;
-        }
+    @Override
+    protected void stopped() {
+        shooter = null;
+        live = false;
     }
 
     @Override
     public void paint(Graphics g) {
-        int[] xPoints = new int[vertices.length];
-        int[] yPoints = new int[vertices.length];
-
-        for (int i = 0; i < vertices.length; i++) {
-            xPoints[i] = vertices[i].x + getX();
-            yPoints[i] = vertices[i].y + getY();
-        }
+        paint(g, getX(), getY());
+    }
 
-        g.setColor(Color.GRAY);
-        g.fillPolygon(xPoints, yPoints, vertices.length);
+    @Override
+    public void paint(Graphics g, int x, int y, int angle) {
+        IMAGES.draw(g, getShape(angle), x, y);
     }
 }
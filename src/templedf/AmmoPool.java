@@ -0,0 +1,170 @@
+package templedf;
+
+import java.awt.Rectangle;
+
+/**
+ * A fixed-size pool of ammo that can be spawned and despawned during a game. Every piece is
+ * created up front and added to the physics world as a contiguous range of entities, and the
+ * pool keeps that range dense: the active pieces are the first {@link #size()} entities of the
+ * range, in the same order as {@link #getAmmo()}, and the rest are free. Despawning a piece
+ * swaps the last active piece into its place, and spawning takes the first free one, so both
+ * are constant time, and stepping the world or walking the active pieces never touches free
+ * ones. Only active pieces are registered with the broadphase.
+ * <p>
+ * Nothing is allocated after construction. When every piece is active, spawning fails.
+ * Neither spawning nor despawning looks at any players, or at any ammo other than the pieces
+ * being swapped: a held piece's holder is the entity carrying it in the physics world.
+ */
+public class AmmoPool {
+    private final PhysicsWorld physics;
+    private final Broadphase collisions;
+    private final int layer;
+    private final Player[] players;
+    // The pieces in entity order, active ones first
+    private final Ammo[] ammo;
+    // The entity ID of the first piece
+    private final int base;
+    private int size = 0;
+
+    /**
+     * Create the pool's ammo and add it to a physics world.
+     * @param capacity the number of pieces
+     * @param size the size of each piece
+     * @param bounds the bounds each piece moves within
+     * @param physics the physics world
+     * @param collisions the broadphase that active pieces are registered with
+     * @param layer the collision layer for the ammo
+     * @param players the players who can hold the ammo
+     */
+    AmmoPool(int capacity, int size, Rectangle bounds, PhysicsWorld physics, Broadphase collisions, int layer,
+            Player[] players) {
+        this.physics = physics;
+        this.collisions = collisions;
+        this.layer = layer;
+        this.players = players;
+        ammo = new Ammo[capacity];
+        base = physics.size();
+
+        for (int i = 0; i < capacity; i++) {
+            ammo[i] = new Ammo(0, 0, size, bounds, physics.getDragModel());
+            physics.add(ammo[i]);
+        }
+    }
+
+    /**
+     * Get the number of active pieces.
+     * @return the active count
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return ammo.length;
+    }
+
+    /**
+     * Get the entity ID of the first piece. The active pieces are the entities from here up to
+     * {@link #size()} more.
+     * @return the first entity ID
+     */
+    public int getBase() {
+        return base;
+    }
+
+    /**
+     * Get every piece in the pool, active ones first. The order changes as pieces are spawned
+     * and despawned, so the array should only be read between changes.
+     * @return the pieces
+     */
+    public Ammo[] getAmmo() {
+        return ammo;
+    }
+
+    /**
+     * Get the piece with the given entity ID.
+     * @param id the entity ID
+     * @return the piece
+     */
+    Ammo byId(int id) {
+        return ammo[id - base];
+    }
+
+    /**
+     * Make a free piece active at the given position, which also becomes where it goes when
+     * it's reset.
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the piece, or null if every piece is active
+     */
+    public Ammo spawn(int x, int y) {
+        if (size == ammo.length) {
+            return null;
+        }
+
+        final Ammo a = ammo[size];
+
+        size += 1;
+        a.setInitialPosition(x, y);
+        a.reset();
+        collisions.add(a, layer);
+
+        return a;
+    }
+
+    /**
+     * Make an active piece free. If a player is holding it, the player lets go of it. Players
+     * are the first entities in the world, so the entity carrying the piece is the holder's
+     * index.
+     * @param a the piece
+     * @return whether the piece was active
+     */
+    public boolean despawn(Ammo a) {
+        final int slot = a.id - base;
+
+        if ((a.world != physics) || (slot < 0) || (slot >= size) || (ammo[slot] != a)) {
+            return false;
+        }
+
+        final int holder = physics.getCarrier(a.id);
+
+        if ((holder >= 0) && (holder < players.length) && (players[holder].getAmmo() == a)) {
+            players[holder].setAmmo(null);
+        }
+
+        a.reset();
+        collisions.remove(a);
+        size -= 1;
+        swap(slot, size);
+
+        return true;
+    }
+
+    /**
+     * Change the number of active pieces to match restored state, registering and
+     * unregistering pieces with the broadphase as needed.
+     * @param size the number of active pieces
+     */
+    void resize(int size) {
+        for (int i = size; i < this.size; i++) {
+            collisions.remove(ammo[i]);
+        }
+
+        for (int i = this.size; i < size; i++) {
+            collisions.add(ammo[i], layer);
+        }
+
+        this.size = size;
+    }
+
+    /**
+     * Swap the pieces in two slots, in both the array and the physics world.
+     */
+    private void swap(int i, int j) {
+        final Ammo a = ammo[i];
+
+        physics.swap(base + i, base + j);
+        ammo[i] = ammo[j];
+        ammo[j] = a;
+    }
+}
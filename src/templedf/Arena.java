@@ -0,0 +1,288 @@
+package templedf;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A load test for the engine: an arena of bots that each seek out the nearest free ammo, pick
+ * it up, chase the nearest other player, and shoot when it's heading their way. The bots press
+ * and release keys through an {@link InputQueue} and the engine ticks with the drained
+ * {@link InputFrame}, the same input path as the keyboard. For each bot count, from two up to
+ * the maximum in doubling steps, the arena reports ticks per second and percentiles of the time
+ * the engine spends in each tick, which shows where the engine stops scaling. Rounds restart as
+ * soon as anyone is hit.
+ * <p>
+ * Usage: {@code Arena [maxBots [ticks [threads]]]}. With more than one thread, the engine ticks
+ * in parallel on a fork/join pool. With {@code -Dspheroids.metrics=true}, every arena's engine
+ * records into one set of {@link TickMetrics} registered over JMX.
+ */
+public class Arena {
+    // The ammo per bot
+    private static final int AMMO_PER_BOT = 2;
+    // How far off target a bot stops steering, so that it doesn't jitter around the target
+    private static final int SLACK = Engine.PLAYER_SIZE / 2;
+    // The cosine of the widest angle between a bot's heading and its target that it shoots at
+    private static final float AIM = 0.95f;
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private final Engine engine;
+    private final Bots bots;
+    private final InputQueue queue;
+    private final InputFrame frame;
+    private final long[] latencies;
+
+    /**
+     * Set up an arena.
+     * @param botCount the number of bots
+     * @param ticks the number of ticks to measure
+     * @param seed the random seed
+     */
+    public Arena(int botCount, int ticks, long seed) {
+        final int ammoCount = botCount * AMMO_PER_BOT;
+
+        engine = new Engine(seed, ammoCount, new CollisionWorld(Engine.CELL_SIZE), ammoCount, botCount);
+        // Each bot sends at most six events a tick: two releases, two presses, and a tap
+        queue = new InputQueue(Integer.highestOneBit(botCount * 6) * 2);
+        frame = new InputFrame(botCount);
+        bots = new Bots(engine, queue);
+        latencies = new long[ticks];
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Tick the engine as fast as it will go, timing each tick.
+     * @return the time each tick took in nanoseconds, which is reused by the next run
+     */
+    public long[] run() {
+        for (int t = 0; t < latencies.length; t++) {
+            if (engine.isRoundOver()) {
+                engine.restart();
+            }
+
+            bots.act();
+
+            final long start = System.nanoTime();
+
+            queue.drain(frame, Long.MAX_VALUE);
+
+            if (engine.getMetrics() != null) {
+                engine.getMetrics().record(TickMetrics.Phase.INPUT, start);
+            }
+
+            engine.tick(frame);
+            latencies[t] = System.nanoTime() - start;
+        }
+
+        return latencies;
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        final int maxBots = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+        final int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        final int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        final ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        final TickMetrics metrics = Boolean.getBoolean("spheroids.metrics") ? new TickMetrics().register("arena") : null;
+
+        System.out.printf("%8s %12s %10s %10s %10s %10s %10s %8s%n",
+                "bots", "ticks/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "hits");
+
+        for (int botCount = 2; botCount <= maxBots; botCount *= 2) {
+            final Arena arena = new Arena(botCount, ticks, 42L);
+
+            if (pool != null) {
+                arena.getEngine().setParallelism(pool, threads * 4);
+            }
+
+            arena.getEngine().setMetrics(metrics);
+
+            // Once to warm up and once to measure
+            arena.run();
+
+            final int before = arena.getHits();
+            final long[] latencies = arena.run().clone();
+            final long total = Arrays.stream(latencies).sum();
+
+            Arrays.sort(latencies);
+            System.out.printf("%8d %12.0f", botCount, ticks / (total / 1e9));
+
+            for (double percentile : PERCENTILES) {
+                System.out.printf(" %10.1f", latencies[percentileIndex(latencies.length, percentile)] / 1e3);
+            }
+
+            System.out.printf(" %10.1f %8d%n", latencies[latencies.length - 1] / 1e3, arena.getHits() - before);
+        }
+
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Get the number of times a bot has picked up ammo so far.
+     * @return the pickup count
+     */
+    public int getPickups() {
+        return bots.getPickups();
+    }
+
+    /**
+     * Get the total number of hits scored so far.
+     * @return the hit count
+     */
+    public int getHits() {
+        int hits = 0;
+
+        for (int p = 0; p < engine.getPlayers().length; p++) {
+            hits += engine.getScore(p);
+        }
+
+        return hits;
+    }
+
+    private static int percentileIndex(int count, double percentile) {
+        return Math.min(count - 1, (int)Math.ceil(count * percentile / 100) - 1);
+    }
+
+    /**
+     * The bots for every player. Each bot holds the direction keys towards its current target
+     * and only sends events when the direction it wants changes.
+     */
+    static class Bots {
+        private final Engine engine;
+        private final InputQueue queue;
+        private final int[] xDir;
+        private final int[] yDir;
+        // Whether each bot was loaded when it last acted, to count pickups
+        private final boolean[] loaded;
+        private int pickups = 0;
+
+        Bots(Engine engine, InputQueue queue) {
+            this.engine = engine;
+            this.queue = queue;
+            xDir = new int[engine.getPlayers().length];
+            yDir = new int[engine.getPlayers().length];
+            loaded = new boolean[engine.getPlayers().length];
+        }
+
+        int getPickups() {
+            return pickups;
+        }
+
+        /**
+         * Queue this tick's key presses and releases for every bot.
+         */
+        void act() {
+            final Player[] players = engine.getPlayers();
+
+            for (int p = 0; p < players.length; p++) {
+                final Player player = players[p];
+
+                if (player.isLoaded() && !loaded[p]) {
+                    pickups += 1;
+                }
+
+                loaded[p] = player.isLoaded();
+
+                final Sprite target = player.isLoaded() ? nearestPlayer(player) : nearestFreeAmmo(player);
+
+                if (target == null) {
+                    steer(p, 0, 0);
+                    continue;
+                }
+
+                final int dx = target.getX() - player.getX();
+                final int dy = target.getY() - player.getY();
+
+                steer(p, Math.abs(dx) > SLACK ? Integer.signum(dx) : 0, Math.abs(dy) > SLACK ? Integer.signum(dy) : 0);
+
+                if (player.isLoaded() && isAimedAt(player, dx, dy)) {
+                    queue.offer(0L, InputFrame.event(p, InputFrame.SHOOT, true));
+                    queue.offer(0L, InputFrame.event(p, InputFrame.SHOOT, false));
+                }
+            }
+        }
+
+        /**
+         * Whether a player's heading is within the shooting angle of the direction to a target.
+         */
+        static boolean isAimedAt(Player player, int dx, int dy) {
+            final float xHeading = player.getXHeading();
+            final float yHeading = player.getYHeading();
+            final float dot = xHeading * dx + yHeading * dy;
+
+            return (dot > 0) && (dot * dot > AIM * AIM * (xHeading * xHeading + yHeading * yHeading) *
+                    ((float)dx * dx + (float)dy * dy));
+        }
+
+        private Sprite nearestPlayer(Player player) {
+            Sprite nearest = null;
+            long best = Long.MAX_VALUE;
+
+            for (Player other : engine.getPlayers()) {
+                if (other != player) {
+                    final long distance = distanceSquared(player, other);
+
+                    if (distance < best) {
+                        best = distance;
+                        nearest = other;
+                    }
+                }
+            }
+
+            return nearest;
+        }
+
+        private Sprite nearestFreeAmmo(Player player) {
+            final Ammo[] ammo = engine.getAmmo();
+            Sprite nearest = null;
+            long best = Long.MAX_VALUE;
+
+            for (int a = 0; a < engine.getAmmoPool().size(); a++) {
+                if ((ammo[a].getShooter() == null) && !ammo[a].isLive()) {
+                    final long distance = distanceSquared(player, ammo[a]);
+
+                    if (distance < best) {
+                        best = distance;
+                        nearest = ammo[a];
+                    }
+                }
+            }
+
+            return nearest;
+        }
+
+        private static long distanceSquared(Sprite a, Sprite b) {
+            final long dx = a.getX() - b.getX();
+            final long dy = a.getY() - b.getY();
+
+            return dx * dx + dy * dy;
+        }
+
+        /**
+         * Change the direction keys a bot is holding.
+         */
+        void steer(int player, int x, int y) {
+            if (x != xDir[player]) {
+                press(player, xDir[player], InputFrame.LEFT, InputFrame.RIGHT, false);
+                press(player, x, InputFrame.LEFT, InputFrame.RIGHT, true);
+                xDir[player] = x;
+            }
+
+            if (y != yDir[player]) {
+                press(player, yDir[player], InputFrame.UP, InputFrame.DOWN, false);
+                press(player, y, InputFrame.UP, InputFrame.DOWN, true);
+                yDir[player] = y;
+            }
+        }
+
+        private void press(int player, int dir, int negative, int positive, boolean pressed) {
+            if (dir != 0) {
+                queue.offer(0L, InputFrame.event(player, dir < 0 ? negative : positive, pressed));
+            }
+        }
+    }
+}
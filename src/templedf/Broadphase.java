@@ -0,0 +1,51 @@
+package templedf;
+
+/**
+ * Finds the pairs of sprites that might be colliding, so that the SAT narrowphase only runs on
+ * those. Sprites register with a layer, and sprites in the same layer are never paired.
+ */
+public interface Broadphase {
+    interface PairVisitor {
+        void visit(Sprite a, Sprite b);
+    }
+
+    /**
+     * Register a sprite. It isn't considered until the next call to {@link #update()}.
+     * @param sprite the sprite to add
+     * @param layer the sprite's collision layer
+     */
+    void add(Sprite sprite, int layer);
+
+    /**
+     * Unregister a sprite.
+     * @param sprite the sprite to remove
+     * @return whether the sprite was registered
+     */
+    boolean remove(Sprite sprite);
+
+    int size();
+
+    /**
+     * Bring the candidate pairs up to date with the sprites' current positions. This should be
+     * called once per tick, after everything has moved.
+     */
+    void update();
+
+    /**
+     * Visit every candidate pair once, with the earlier registered sprite first.
+     * @param visitor the callback for each candidate pair
+     */
+    default void forEachPair(PairVisitor visitor) {
+        forEachPair(visitor, 0, 1);
+    }
+
+    /**
+     * Visit one partition of the candidate pairs. Every pair is in exactly one partition, and
+     * different partitions can be visited concurrently as long as nothing updates the
+     * broadphase in the meantime.
+     * @param visitor the callback for each candidate pair
+     * @param partition the partition to visit, from 0 to partitions - 1
+     * @param partitions the total number of partitions
+     */
+    void forEachPair(PairVisitor visitor, int partition, int partitions);
+}
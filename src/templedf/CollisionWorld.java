@@ -0,0 +1,238 @@
+package templedf;
+
+import java.util.Arrays;
+
+/**
+ * A uniform spatial hash used as the collision broadphase. Sprites register with a layer, and
+ * once per tick {@link #update()} rebuilds the hash from the paths they took during the tick. Pairs of
+ * sprites in different layers that share at least one cell are then handed to a
+ * {@link PairVisitor} as candidates for the SAT narrowphase in {@link Sprite#intersects(Sprite)}.
+ * The cost of a tick is proportional to the number of sprites and their actual neighbors rather
+ * than to the product of the layer sizes. Partitions are vertical strips of cells.
+ */
+public class CollisionWorld implements Broadphase {
+    private final int cellSize;
+    private Sprite[] sprites = new Sprite[16];
+    private int[] layers = new int[16];
+    // The range of cells each sprite covered at the last update
+    private int[] cells = new int[16 * 4];
+    // Whether any later registered sprite is in a different layer, since only those can pair
+    private boolean[] pairsLater = new boolean[16];
+    private int minCellX = 0;
+    private int maxCellX = -1;
+    private int count = 0;
+    private int[] buckets = new int[64];
+    private int[] entryCellX = new int[64];
+    private int[] entryCellY = new int[64];
+    private int[] entrySprite = new int[64];
+    private int[] entryNext = new int[64];
+    private int entryCount = 0;
+
+    public CollisionWorld(int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("cell size must be positive: " + cellSize);
+        }
+
+        this.cellSize = cellSize;
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the lowest column of cells occupied at the last update.
+     * @return the lowest occupied cell column
+     */
+    public int getMinCellX() {
+        return minCellX;
+    }
+
+    /**
+     * Get the highest column of cells occupied at the last update. This is less than
+     * {@link #getMinCellX()} if there are no sprites.
+     * @return the highest occupied cell column
+     */
+    public int getMaxCellX() {
+        return maxCellX;
+    }
+
+    /**
+     * Register a sprite with the broadphase. Sprites in the same layer are never reported as a
+     * pair. The sprite is not hashed until the next call to {@link #update()}.
+     * @param sprite the sprite to add
+     * @param layer the sprite's collision layer
+     */
+    @Override
+    public void add(Sprite sprite, int layer) {
+        if (count == sprites.length) {
+            sprites = Arrays.copyOf(sprites, count * 2);
+            layers = Arrays.copyOf(layers, count * 2);
+            cells = Arrays.copyOf(cells, count * 8);
+            pairsLater = Arrays.copyOf(pairsLater, count * 2);
+        }
+
+        sprites[count] = sprite;
+        layers[count] = layer;
+        count += 1;
+    }
+
+    /**
+     * Remove a sprite from the broadphase. The last registered sprite takes its place, so the
+     * order in which pairs are visited may change.
+     * @param sprite the sprite to remove
+     * @return whether the sprite was registered
+     */
+    @Override
+    public boolean remove(Sprite sprite) {
+        for (int i = 0; i < count; i++) {
+            if (sprites[i] == sprite) {
+                count -= 1;
+                sprites[i] = sprites[count];
+                layers[i] = layers[count];
+                System.arraycopy(cells, count * 4, cells, i * 4, 4);
+                sprites[count] = null;
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Rehash every registered sprite at its current position. This should be called once per
+     * tick, after everything has moved and before {@link #forEachPair(PairVisitor)}.
+     */
+    @Override
+    public void update() {
+        // Size the table from the previous update to keep the load factor at or below one half.
+        // The chains are still correct if we overfill this time around, just longer.
+        if (entryCount * 2 > buckets.length) {
+            buckets = new int[Integer.highestOneBit(entryCount) * 4];
+        }
+
+        Arrays.fill(buckets, -1);
+        entryCount = 0;
+        minCellX = Integer.MAX_VALUE;
+        maxCellX = Integer.MIN_VALUE;
+
+        for (int i = 0; i < count; i++) {
+            final Sprite sprite = sprites[i];
+            // The shape is read every time because the sprite may have turned
+            final Shape shape = sprite.shape;
+            final PhysicsWorld world = sprite.world;
+            // Hash everywhere the sprite passed through, not just where it is now
+            final int minCellX = Math.floorDiv(world.getPathMinX(sprite.id) + shape.minX, cellSize);
+            final int minCellY = Math.floorDiv(world.getPathMinY(sprite.id) + shape.minY, cellSize);
+            final int maxCellX = Math.floorDiv(world.getPathMaxX(sprite.id) + shape.maxX, cellSize);
+            final int maxCellY = Math.floorDiv(world.getPathMaxY(sprite.id) + shape.maxY, cellSize);
+
+            cells[i * 4] = minCellX;
+            cells[i * 4 + 1] = minCellY;
+            cells[i * 4 + 2] = maxCellX;
+            cells[i * 4 + 3] = maxCellY;
+            this.minCellX = Math.min(this.minCellX, minCellX);
+            this.maxCellX = Math.max(this.maxCellX, maxCellX);
+
+            for (int cx = minCellX; cx <= maxCellX; cx++) {
+                for (int cy = minCellY; cy <= maxCellY; cy++) {
+                    insert(cx, cy, i);
+                }
+            }
+        }
+
+        int laterLayer = 0;
+        boolean laterMixed = false;
+
+        for (int i = count - 1; i >= 0; i--) {
+            pairsLater[i] = laterMixed || ((i < count - 1) && (laterLayer != layers[i]));
+
+            if (i == count - 1) {
+                laterLayer = layers[i];
+            } else if (laterLayer != layers[i]) {
+                laterMixed = true;
+            }
+        }
+    }
+
+    /**
+     * Visit the pairs whose first shared cell is in one strip of the occupied columns.
+     */
+    @Override
+    public void forEachPair(PairVisitor visitor, int partition, int partitions) {
+        final long columns = (long)maxCellX - minCellX + 1;
+
+        forEachPairInColumns(visitor, (int)(minCellX + columns * partition / partitions),
+                (int)(minCellX + columns * (partition + 1) / partitions - 1));
+    }
+
+    /**
+     * Visit the pairs whose first shared cell is in the given range of columns. Splitting the
+     * columns into disjoint strips splits the pairs the same way.
+     * @param visitor the callback for each candidate pair
+     * @param fromCellX the first column, inclusive
+     * @param toCellX the last column, inclusive
+     */
+    public void forEachPairInColumns(PairVisitor visitor, int fromCellX, int toCellX) {
+        final int mask = buckets.length - 1;
+
+        for (int i = 0; i < count; i++) {
+            if (!pairsLater[i]) {
+                continue;
+            }
+
+            final int maxCellX = Math.min(cells[i * 4 + 2], toCellX);
+
+            for (int cx = Math.max(cells[i * 4], fromCellX); cx <= maxCellX; cx++) {
+                for (int cy = cells[i * 4 + 1]; cy <= cells[i * 4 + 3]; cy++) {
+                    for (int e = buckets[hash(cx, cy) & mask]; e >= 0; e = entryNext[e]) {
+                        final int j = entrySprite[e];
+
+                        if ((j <= i) || (layers[i] == layers[j]) || (entryCellX[e] != cx) || (entryCellY[e] != cy)) {
+                            continue;
+                        }
+
+                        // Only report the pair from the first cell the two sprites share so that
+                        // we don't need a set to deduplicate it
+                        if ((cx == Math.max(cells[i * 4], cells[j * 4])) &&
+                                (cy == Math.max(cells[i * 4 + 1], cells[j * 4 + 1]))) {
+                            visitor.visit(sprites[i], sprites[j]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void insert(int cx, int cy, int sprite) {
+        if (entryCount == entrySprite.length) {
+            final int length = entryCount * 2;
+
+            entryCellX = Arrays.copyOf(entryCellX, length);
+            entryCellY = Arrays.copyOf(entryCellY, length);
+            entrySprite = Arrays.copyOf(entrySprite, length);
+            entryNext = Arrays.copyOf(entryNext, length);
+        }
+
+        final int bucket = hash(cx, cy) & (buckets.length - 1);
+
+        entryCellX[entryCount] = cx;
+        entryCellY[entryCount] = cy;
+        entrySprite[entryCount] = sprite;
+        entryNext[entryCount] = buckets[bucket];
+        buckets[bucket] = entryCount;
+        entryCount += 1;
+    }
+
+    private static int hash(int cx, int cy) {
+        final int h = cx * 0x9E3779B1 ^ cy * 0x85EBCA6B;
+
+        return h ^ (h >>> 16);
+    }
+}
@@ -3,144 +3,66 @@ package templedf;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 
+/**
+ * The keyboard controls for two players sharing a keyboard: the arrow keys and space for the
+ * first player, and WASD and F for the second. Key presses and releases are timestamped and
+ * queued for the simulation, which applies them at the start of its next tick.
+ */
 public class Controller extends KeyAdapter {
-    int[] xDir = {0, 0};
-    int[] yDir = {0, 0};
-    boolean shoot[] = {false, false};
+    private final InputQueue queue;
+
+    public Controller(InputQueue queue) {
+        this.queue = queue;
+    }
 
     @Override
     public void keyPressed(KeyEvent e) {
-        switch(e.getKeyCode()) {
-            case KeyEvent.VK_DOWN:
-                if (yDir[0] == 0) {
-                    yDir[0] = 1;
-                }
-
-                break;
-            case KeyEvent.VK_UP:
-                if (yDir[0] == 0) {
-                    yDir[0] = -1;
-                }
-
-                break;
-            case KeyEvent.VK_LEFT:
-                if (xDir[0] == 0) {
-                    xDir[0] = -1;
-                }
-
-                break;
-            case KeyEvent.VK_RIGHT:
-                if (xDir[0] == 0) {
-                    xDir[0] = 1;
-                }
-
-                break;
-            case KeyEvent.VK_SPACE:
-                shoot[0] = true;
-                break;
-            case KeyEvent.VK_S:
-                if (yDir[1] == 0) {
-                    yDir[1] = 1;
-                }
-
-                break;
-            case KeyEvent.VK_W:
-                if (yDir[1] == 0) {
-                    yDir[1] = -1;
-                }
-
-                break;
-            case KeyEvent.VK_A:
-                if (xDir[1] == 0) {
-                    xDir[1] = -1;
-                }
-
-                break;
-            case KeyEvent.VK_D:
-                if (xDir[1] == 0) {
-                    xDir[1] = 1;
-                }
-
-                break;
-            case KeyEvent.VK_F:
-                shoot[1] = true;
-                break;
-        }
+        offer(e.getKeyCode(), true);
     }
 
     @Override
     public void keyReleased(KeyEvent e) {
-        switch(e.getKeyCode()) {
-            case KeyEvent.VK_DOWN:
-                if (yDir[0] == 1) {
-                    yDir[0] = 0;
-                }
+        offer(e.getKeyCode(), false);
+    }
 
-                break;
-            case KeyEvent.VK_UP:
-                if (yDir[0] == -1) {
-                    yDir[0] = 0;
-                }
+    private void offer(int keyCode, boolean pressed) {
+        final int event;
 
+        switch (keyCode) {
+            case KeyEvent.VK_UP:
+                event = InputFrame.event(0, InputFrame.UP, pressed);
+                break;
+            case KeyEvent.VK_DOWN:
+                event = InputFrame.event(0, InputFrame.DOWN, pressed);
                 break;
             case KeyEvent.VK_LEFT:
-                if (xDir[0] == -1) {
-                    xDir[0] = 0;
-                }
-
+                event = InputFrame.event(0, InputFrame.LEFT, pressed);
                 break;
             case KeyEvent.VK_RIGHT:
-                if (xDir[0] == 1) {
-                    xDir[0] = 0;
-                }
-
+                event = InputFrame.event(0, InputFrame.RIGHT, pressed);
                 break;
-            case KeyEvent.VK_S:
-                if (yDir[1] == 1) {
-                    yDir[1] = 0;
-                }
-
+            case KeyEvent.VK_SPACE:
+                event = InputFrame.event(0, InputFrame.SHOOT, pressed);
                 break;
             case KeyEvent.VK_W:
-                if (yDir[1] == -1) {
-                    yDir[1] = 0;
-                }
-
+                event = InputFrame.event(1, InputFrame.UP, pressed);
+                break;
+            case KeyEvent.VK_S:
+                event = InputFrame.event(1, InputFrame.DOWN, pressed);
                 break;
             case KeyEvent.VK_A:
-                if (xDir[1] == -1) {
-                    xDir[1] = 0;
-                }
-
+                event = InputFrame.event(1, InputFrame.LEFT, pressed);
                 break;
             case KeyEvent.VK_D:
-                if (xDir[1] == 1) {
-                    xDir[1] = 0;
-                }
-
+                event = InputFrame.event(1, InputFrame.RIGHT, pressed);
                 break;
+            case KeyEvent.VK_F:
+                event = InputFrame.event(1, InputFrame.SHOOT, pressed);
+                break;
+            default:
+                return;
         }
-    }
-
-    public void reset() {
-        xDir = new int[] {0, 0};
-        yDir = new int[] {0, 0};
-        shoot = new boolean[] {false, false};
-    }
-
-    public int getXDir(int player) {
-        return xDir[player];
-    }
-
-    public int getYDir(int player) {
-        return yDir[player];
-    }
-
-    public boolean isShooting(int player) {
-        boolean ret = shoot[player];
-
-        shoot[player] = false;
 
-        return ret;
+        queue.offer(System.nanoTime(), event);
     }
 }
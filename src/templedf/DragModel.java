@@ -2,4 +2,42 @@ package templedf;
 
 public interface DragModel {
     public float[] drag(int x, int y, float xVel, float yVel);
+
+    /**
+     * Calculate the drag on a sprite without allocating. The default implementation delegates to
+     * {@link #drag(int, int, float, float)}, so models that care about garbage should override it.
+     * @param x the x coordinate of the sprite
+     * @param y the y coordinate of the sprite
+     * @param xVel the x velocity of the sprite
+     * @param yVel the y velocity of the sprite
+     * @param out receives the x drag in element 0 and the y drag in element 1
+     */
+    public default void drag(int x, int y, float xVel, float yVel, float[] out) {
+        float[] drag = drag(x, y, xVel, yVel);
+
+        out[0] = drag[0];
+        out[1] = drag[1];
+    }
+
+    /**
+     * Apply drag to a batch of sprites stored as parallel arrays, adding the drag for each sprite
+     * to its velocity in place. The default implementation calls
+     * {@link #drag(int, int, float, float, float[])} for each sprite with the caller's scratch
+     * array, so it allocates nothing beyond what that method does. Implementations can override
+     * this with a loop the JIT can vectorize.
+     * @param x the x coordinates of the sprites
+     * @param y the y coordinates of the sprites
+     * @param xVel the x velocities of the sprites, updated in place
+     * @param yVel the y velocities of the sprites, updated in place
+     * @param from the index of the first sprite, inclusive
+     * @param to the index of the last sprite, exclusive
+     * @param scratch at least two elements that the calling thread owns, overwritten
+     */
+    public default void dragAll(float[] x, float[] y, float[] xVel, float[] yVel, int from, int to, float[] scratch) {
+        for (int i = from; i < to; i++) {
+            drag((int)x[i], (int)y[i], xVel[i], yVel[i], scratch);
+            xVel[i] += scratch[0];
+            yVel[i] += scratch[1];
+        }
+    }
 }
@@ -0,0 +1,765 @@
+package templedf;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The game simulation: the players, the ammo, the score, and the rules that tie them together.
+ * The engine has no dependency on Swing or on a display and doesn't keep time, so it can be
+ * stepped as fast as the CPU allows with inputs supplied programmatically. {@link Spheroids}
+ * drives it from the keyboard in real time.
+ * <p>
+ * For large worlds, {@link #setParallelism(ForkJoinPool, int)} splits each tick across a
+ * fork/join pool. Integration is split into ranges of entities and collision detection into
+ * partitions of the broadphase's candidate pairs. Each partition only records what it found, and the
+ * scoring and loading are applied afterwards in a fixed order, so a parallel tick produces
+ * exactly the same world as a serial one.
+ * <p>
+ * Everything that changes from tick to tick can be saved to a buffer with
+ * {@link #save(ByteBuffer)} and put back with {@link #restore(ByteBuffer)}, which together with
+ * determinism is what {@link Rollback} uses to rewind and replay ticks.
+ */
+public class Engine implements DragModel {
+    public static final int WIDTH = 800;
+    public static final int HEIGHT = 800;
+    public static final int PLAYER_SIZE = 25;
+    public static final int AMMO_SIZE = 10;
+    public static final int AMMO_COUNT = 10;
+    public static final int PLAYER_COUNT = 2;
+    // The players start evenly spaced around a circle of this radius in the middle of the field
+    public static final int START_RADIUS = 200;
+    public static final float ACCELERATION = 0.5f;
+    public static final float DRAG = 0.4f;
+    // The cell size for the default broadphase
+    public static final int CELL_SIZE = 2 * PLAYER_SIZE;
+    private static final Color[] PLAYER_COLORS = {Color.BLUE, Color.RED};
+    private static final float ROOT_TWO_OVER_TWO = (float) Math.sqrt(2) / 2;
+    private static final int PLAYER_LAYER = 0;
+    private static final int AMMO_LAYER = 1;
+    // The fewest entities worth integrating or colliding in a partition of their own
+    private static final int MIN_PARTITION_ENTITIES = 512;
+    private final long seed;
+    private final Player[] players;
+    private final AmmoPool ammo;
+    // Indexed by player, which is also the player's entity ID
+    private final int[] score;
+    private final Broadphase collisions;
+    private final PhysicsWorld physics;
+    private boolean roundOver = false;
+    private long tick = 0L;
+    private ForkJoinPool pool = null;
+    private TickMetrics metrics = null;
+    private Partition[] partitions = {new Partition()};
+    private int activePartitions = 1;
+    private final RecursiveAction fork = new RecursiveAction() {
+        @Override
+        protected void compute() {
+            for (int i = 1; i < activePartitions; i++) {
+                partitions[i].fork();
+            }
+
+            partitions[0].compute();
+
+            for (int i = activePartitions - 1; i >= 1; i--) {
+                partitions[i].join();
+            }
+        }
+    };
+    private long[] pickups = new long[16];
+
+    /**
+     * Create an engine. The seed determines where the ammo is placed.
+     * @param seed the random seed
+     */
+    public Engine(long seed) {
+        this(seed, AMMO_COUNT);
+    }
+
+    /**
+     * Create an engine with a given amount of ammo. The ammo is placed in mirrored pairs, so
+     * the count must be even.
+     * @param seed the random seed
+     * @param ammoCount the number of pieces of ammo
+     */
+    public Engine(long seed, int ammoCount) {
+        this(seed, ammoCount, new CollisionWorld(CELL_SIZE));
+    }
+
+    /**
+     * Create an engine with a given amount of ammo and collision broadphase.
+     * @param seed the random seed
+     * @param ammoCount the number of pieces of ammo, which must be even
+     * @param collisions an empty broadphase
+     */
+    public Engine(long seed, int ammoCount, Broadphase collisions) {
+        this(seed, ammoCount, collisions, ammoCount);
+    }
+
+    /**
+     * Create an engine with room to spawn more ammo during the game than it starts with.
+     * @param seed the random seed
+     * @param ammoCount the number of pieces of ammo to start with, which must be even
+     * @param collisions an empty broadphase
+     * @param ammoCapacity the most pieces of ammo there can be at once
+     * @see #getAmmoPool()
+     */
+    public Engine(long seed, int ammoCount, Broadphase collisions, int ammoCapacity) {
+        this(seed, ammoCount, collisions, ammoCapacity, PLAYER_COUNT);
+    }
+
+    /**
+     * Create an engine with any number of players, such as for an arena of bots. The players
+     * start evenly spaced around a circle, with the first on the left, and the score overlay
+     * and the keyboard only know about the first two.
+     * @param seed the random seed
+     * @param ammoCount the number of pieces of ammo to start with, which must be even
+     * @param collisions an empty broadphase
+     * @param ammoCapacity the most pieces of ammo there can be at once
+     * @param playerCount the number of players
+     */
+    public Engine(long seed, int ammoCount, Broadphase collisions, int ammoCapacity, int playerCount) {
+        if (playerCount <= 0) {
+            throw new IllegalArgumentException("player count must be positive: " + playerCount);
+        }
+
+        if ((ammoCount < 0) || (ammoCount % 2 != 0)) {
+            throw new IllegalArgumentException("ammo count must be even: " + ammoCount);
+        }
+
+        if (ammoCapacity < ammoCount) {
+            throw new IllegalArgumentException("ammo capacity is less than the ammo count: " + ammoCapacity);
+        }
+
+        Rectangle bounds = new Rectangle(0, 0, WIDTH, HEIGHT);
+        Random rand = new Random(seed);
+
+        this.seed = seed;
+        this.collisions = collisions;
+        players = new Player[playerCount];
+
+        for (int i = 0; i < playerCount; i++) {
+            final double angle = Math.PI + 2 * Math.PI * i / playerCount;
+            final Color color = i < PLAYER_COLORS.length ? PLAYER_COLORS[i] :
+                    Color.getHSBColor((float)i / playerCount, 0.8f, 0.8f);
+
+            players[i] = new Player((int)Math.round(WIDTH / 2 + START_RADIUS * Math.cos(angle)),
+                    (int)Math.round(HEIGHT / 2 + START_RADIUS * Math.sin(angle)), PLAYER_SIZE, bounds, this, color);
+        }
+
+        score = new int[players.length];
+        physics = new PhysicsWorld(this, players.length + ammoCapacity);
+
+        // Players go into the physics world first so that they step before the ammo they carry
+        for (Player p : players) {
+            collisions.add(p, PLAYER_LAYER);
+            physics.add(p);
+        }
+
+        ammo = new AmmoPool(ammoCapacity, AMMO_SIZE, bounds, physics, collisions, AMMO_LAYER, players);
+
+        for (int i = 0; i < ammoCount / 2; i++) {
+            int x = rand.nextInt(AMMO_SIZE, WIDTH - AMMO_SIZE);
+            int y = rand.nextInt(AMMO_SIZE, HEIGHT - AMMO_SIZE);
+
+            ammo.spawn(x, y);
+            ammo.spawn(WIDTH - x, HEIGHT - y);
+        }
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public Player[] getPlayers() {
+        return players;
+    }
+
+    /**
+     * Get every piece of ammo, active or not. The first {@link AmmoPool#size()} pieces are the
+     * active ones, and the order changes as ammo is spawned and despawned.
+     * @return the ammo
+     */
+    public Ammo[] getAmmo() {
+        return ammo.getAmmo();
+    }
+
+    /**
+     * Get the pool that ammo can be spawned from and despawned into between ticks.
+     * @return the ammo pool
+     */
+    public AmmoPool getAmmoPool() {
+        return ammo;
+    }
+
+    public int getScore(int player) {
+        return score[player];
+    }
+
+    /**
+     * Record how long each phase of each tick takes from now on, or stop recording.
+     * @param metrics the metrics to record into, or null to stop
+     */
+    public void setMetrics(TickMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public TickMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Split each tick across a fork/join pool, or go back to ticking serially.
+     * @param pool the pool to run on, or null to tick on the calling thread
+     * @param partitions the most partitions to split each phase of a tick into
+     */
+    public void setParallelism(ForkJoinPool pool, int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions must be positive: " + partitions);
+        }
+
+        this.pool = pool;
+        this.partitions = new Partition[pool == null ? 1 : partitions];
+
+        for (int i = 0; i < this.partitions.length; i++) {
+            this.partitions[i] = new Partition();
+        }
+    }
+
+    /**
+     * Get the number of ticks simulated so far, across all rounds.
+     * @return the tick count
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Whether a player has been hit. The engine doesn't tick again until {@link #restart()}.
+     * @return whether the round is over
+     */
+    public boolean isRoundOver() {
+        return roundOver;
+    }
+
+    /**
+     * Copy the state needed to draw the world into a snapshot.
+     * @param snapshot a snapshot of this engine
+     */
+    public void snapshot(Snapshot snapshot) {
+        for (int p = 0; p < players.length; p++) {
+            snapshot.playerX[p] = players[p].getX();
+            snapshot.playerY[p] = players[p].getY();
+            snapshot.lastPlayerX[p] = physics.getLastX(players[p].id);
+            snapshot.lastPlayerY[p] = physics.getLastY(players[p].id);
+            snapshot.playerAngle[p] = players[p].getAngle();
+            snapshot.score[p] = score[p];
+        }
+
+        final Ammo[] ammo = this.ammo.getAmmo();
+
+        for (int a = 0; a < this.ammo.size(); a++) {
+            snapshot.ammo[a] = ammo[a];
+            snapshot.ammoX[a] = ammo[a].getX();
+            snapshot.ammoY[a] = ammo[a].getY();
+            snapshot.lastAmmoX[a] = physics.getLastX(ammo[a].id);
+            snapshot.lastAmmoY[a] = physics.getLastY(ammo[a].id);
+        }
+
+        snapshot.ammoCount = this.ammo.size();
+        snapshot.tick = tick;
+        snapshot.roundOver = roundOver;
+    }
+
+    /**
+     * Get the number of bytes {@link #save(ByteBuffer)} writes.
+     * @return the size of the saved state
+     */
+    public int getStateSize() {
+        return 8 + 1 + 4 + players.length * 8 + ammo.getCapacity() * 13 + physics.getStateSize();
+    }
+
+    /**
+     * Write the state of the world to a buffer: the tick, whether the round is over, the
+     * scores, which ammo is active, who holds and who shot each piece of ammo, where each piece
+     * resets to, and the physical state of every sprite. This writes {@link #getStateSize()} bytes and doesn't allocate.
+     * @param buffer the buffer to write to
+     */
+    public void save(ByteBuffer buffer) {
+        buffer.putLong(tick);
+        buffer.put((byte)(roundOver ? 1 : 0));
+        buffer.putInt(ammo.size());
+
+        for (int p = 0; p < players.length; p++) {
+            final Ammo a = players[p].getAmmo();
+
+            buffer.putInt(score[p]);
+            buffer.putInt(a == null ? -1 : a.id);
+        }
+
+        for (Ammo a : ammo.getAmmo()) {
+            buffer.putInt(a.getShooter() == null ? -1 : a.getShooter().id);
+            buffer.put((byte)(a.isLive() ? 1 : 0));
+            buffer.putInt(a.getInitialX());
+            buffer.putInt(a.getInitialY());
+        }
+
+        physics.save(buffer);
+    }
+
+    /**
+     * Put the world back in the state written by {@link #save(ByteBuffer)} on an engine with the
+     * same seed and ammo capacity. This doesn't allocate.
+     * @param buffer the buffer to read from
+     */
+    public void restore(ByteBuffer buffer) {
+        tick = buffer.getLong();
+        roundOver = buffer.get() != 0;
+        ammo.resize(buffer.getInt());
+
+        for (int p = 0; p < players.length; p++) {
+            score[p] = buffer.getInt();
+
+            final int a = buffer.getInt();
+
+            players[p].setAmmo(a < 0 ? null : ammo.byId(a));
+        }
+
+        for (Ammo a : ammo.getAmmo()) {
+            final int shooter = buffer.getInt();
+
+            a.setShooter(shooter < 0 ? null : players[shooter]);
+            a.setLive(buffer.get() != 0);
+            a.setInitialPosition(buffer.getInt(), buffer.getInt());
+        }
+
+        physics.restore(buffer);
+
+        // Which way the players face follows from which way they last moved
+        for (Player p : players) {
+            p.face();
+        }
+    }
+
+    /**
+     * Put every sprite back where it started for a new round. The score carries over.
+     */
+    public void restart() {
+        for (Sprite s : players) {
+            s.reset();
+        }
+
+        for (int a = 0; a < ammo.size(); a++) {
+            ammo.getAmmo()[a].reset();
+        }
+
+        roundOver = false;
+    }
+
+    /**
+     * Advance the simulation by one tick.
+     * @param input the controls for this tick
+     */
+    public void tick(Input input) {
+        if (roundOver) {
+            return;
+        }
+
+        final GameEvents.Tick event = new GameEvents.Tick();
+        final TickMetrics metrics = this.metrics;
+        long time = metrics != null ? System.nanoTime() : 0L;
+
+        event.begin();
+
+        for (int p = 0; p < players.length; p++) {
+            float xVel = ACCELERATION * input.getXDir(p);
+            float yVel = ACCELERATION * input.getYDir(p);
+
+            if ((xVel != 0) && (yVel != 0)) {
+                xVel *= ROOT_TWO_OVER_TWO;
+                yVel *= ROOT_TWO_OVER_TWO;
+            }
+
+            players[p].incrementVelocity(xVel, yVel);
+        }
+
+        integrate(0, players.length);
+
+        for (int p = 0; p < players.length; p++) {
+            players[p].face();
+
+            if (input.isShooting(p)) {
+                players[p].shoot();
+            }
+        }
+
+        if (metrics != null) {
+            time = metrics.record(TickMetrics.Phase.PLAYERS, time);
+        }
+
+        integrate(players.length, players.length + ammo.size());
+
+        if (metrics != null) {
+            time = metrics.record(TickMetrics.Phase.AMMO, time);
+        }
+
+        collisions.update();
+
+        if (metrics != null) {
+            time = metrics.record(TickMetrics.Phase.BROADPHASE, time);
+        }
+
+        collide(metrics, time);
+        event.end();
+
+        if (event.shouldCommit()) {
+            int live = 0;
+
+            for (int a = 0; a < ammo.size(); a++) {
+                live += ammo.getAmmo()[a].isLive() ? 1 : 0;
+            }
+
+            event.tick = tick;
+            event.liveAmmo = live;
+            event.movingSprites = physics.countMoving(0, players.length + ammo.size());
+            event.commit();
+        }
+
+        tick += 1;
+    }
+
+    private void integrate(int from, int to) {
+        final int count = Math.min(partitions.length, Math.max(1, (to - from) / MIN_PARTITION_ENTITIES));
+
+        for (int i = 0; i < count; i++) {
+            partitions[i].integrate(from + (int)((long)(to - from) * i / count),
+                    from + (int)((long)(to - from) * (i + 1) / count));
+        }
+
+        run(count);
+    }
+
+    /**
+     * Find the hits and pickups in every partition and then apply them. Hits commute, so they're
+     * applied in any order. Pickups don't: a player can only load one piece of ammo, and a piece
+     * of ammo can only be loaded by one player. Pickups are sorted by player and then by ammo,
+     * so each player loads the lowest numbered piece it touches that nobody before it took.
+     */
+    private void collide(TickMetrics metrics, long time) {
+        final int count = Math.min(partitions.length, Math.max(1, collisions.size() / MIN_PARTITION_ENTITIES));
+
+        for (int i = 0; i < count; i++) {
+            partitions[i].collide(i, count);
+        }
+
+        run(count);
+
+        if (metrics != null) {
+            time = metrics.record(TickMetrics.Phase.NARROWPHASE, time);
+        }
+
+        int pickupCount = 0;
+        int hitCount = 0;
+        int loadCount = 0;
+        long pairCount = 0L;
+        long testCount = 0L;
+        long boxRejects = 0L;
+        long circleRejects = 0L;
+        long satRejects = 0L;
+
+        for (int i = 0; i < count; i++) {
+            final Partition partition = partitions[i];
+
+            for (int s = 0; s < partition.scorerCount; s++) {
+                score[partition.scorers[s].id] += 1;
+                roundOver = true;
+
+                final GameEvents.Hit hit = new GameEvents.Hit();
+
+                if (hit.shouldCommit()) {
+                    hit.tick = tick;
+                    hit.shooter = partition.scorers[s].id;
+                    hit.victim = partition.victims[s].id;
+                    hit.commit();
+                }
+            }
+
+            hitCount += partition.scorerCount;
+            pairCount += partition.pairCount;
+            testCount += partition.testCount;
+            boxRejects += partition.rejects[Shape.BOX_REJECT];
+            circleRejects += partition.rejects[Shape.CIRCLE_REJECT];
+            satRejects += partition.rejects[Shape.SAT_REJECT];
+
+            if (pickupCount + partition.pickupCount > pickups.length) {
+                pickups = Arrays.copyOf(pickups, Math.max(pickups.length * 2, pickupCount + partition.pickupCount));
+            }
+
+            System.arraycopy(partition.pickups, 0, pickups, pickupCount, partition.pickupCount);
+            pickupCount += partition.pickupCount;
+        }
+
+        Arrays.sort(pickups, 0, pickupCount);
+
+        for (int i = 0; i < pickupCount; i++) {
+            final Player p = players[(int)(pickups[i] >>> 32)];
+            final Ammo a = ammo.byId((int)pickups[i]);
+
+            if (!p.isLoaded() && (a.getShooter() == null)) {
+                p.load(a);
+                loadCount += 1;
+            }
+        }
+
+        if (metrics != null) {
+            metrics.record(TickMetrics.Phase.PICKUPS, time);
+            metrics.countTick(pairCount, testCount, boxRejects, circleRejects, satRejects, hitCount, loadCount);
+        }
+    }
+
+    private void run(int count) {
+        activePartitions = count;
+
+        if ((pool == null) || (count == 1)) {
+            for (int i = 0; i < count; i++) {
+                partitions[i].compute();
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                partitions[i].reinitialize();
+            }
+
+            fork.reinitialize();
+            pool.invoke(fork);
+        }
+    }
+
+    /**
+     * One partition of a tick: either a range of entity IDs to integrate, or a partition of the
+     * broadphase's candidate pairs to collide. Collision results are only recorded here. Players are
+     * registered with the broadphase before ammo, so the player always comes first in a pair,
+     * and with the physics world first, so a player's entity ID is its index.
+     */
+    @SuppressWarnings("serial")
+    private final class Partition extends RecursiveAction implements Broadphase.PairVisitor {
+        private boolean integrating;
+        private int from;
+        private int to;
+        // The shooter and the player hit for each hit
+        private Player[] scorers = new Player[4];
+        private Player[] victims = new Player[4];
+        private int scorerCount = 0;
+        private long[] pickups = new long[16];
+        private int pickupCount = 0;
+        // The candidate pairs visited, how many of them needed a narrowphase test, and how many
+        // tests each tier rejected, indexed by the tier's result from Shape
+        private int pairCount = 0;
+        private int testCount = 0;
+        private final int[] rejects = new int[Shape.SAT_REJECT + 1];
+        // The free ammo each unloaded player might pick up, gathered during the broadphase and
+        // then tested against the player in one batch
+        private Shape[] candidateShapes = new Shape[0];
+        private float[][] candidateX = new float[0][];
+        private float[][] candidateY = new float[0][];
+        private int[][] candidateIds = new int[0][];
+        private int[] candidateCounts = new int[0];
+        private boolean[] hits = new boolean[16];
+        // For the drag model while this partition steps its range of the physics world
+        private final float[] dragScratch = new float[2];
+
+        void integrate(int from, int to) {
+            integrating = true;
+            this.from = from;
+            this.to = to;
+        }
+
+        void collide(int partition, int partitions) {
+            integrating = false;
+            from = partition;
+            to = partitions;
+        }
+
+        @Override
+        protected void compute() {
+            if (integrating) {
+                physics.step(from, to, dragScratch);
+            } else {
+                scorerCount = 0;
+                pickupCount = 0;
+                pairCount = 0;
+                testCount = 0;
+                Arrays.fill(rejects, 0);
+
+                if (candidateCounts.length != players.length) {
+                    candidateShapes = new Shape[players.length];
+                    candidateX = new float[players.length][16];
+                    candidateY = new float[players.length][16];
+                    candidateIds = new int[players.length][16];
+                    candidateCounts = new int[players.length];
+                }
+
+                Arrays.fill(candidateCounts, 0);
+                collisions.forEachPair(this, from, to);
+                testCandidates();
+            }
+        }
+
+        /**
+         * Test each player against the free ammo gathered for it, through the narrowphase's
+         * batched test.
+         */
+        private void testCandidates() {
+            final Narrowphase narrowphase = Narrowphase.get();
+
+            for (int p = 0; p < candidateCounts.length; p++) {
+                final int count = candidateCounts[p];
+
+                if (count == 0) {
+                    continue;
+                }
+
+                if (hits.length < count) {
+                    hits = new boolean[Math.max(hits.length * 2, count)];
+                }
+
+                final Player player = players[p];
+
+                testCount += count;
+                narrowphase.test(player.shape.pair(candidateShapes[p]), player.getX(), player.getY(),
+                        candidateX[p], candidateY[p], count, hits, rejects);
+
+                for (int i = 0; i < count; i++) {
+                    if (hits[i]) {
+                        addPickup(p, candidateIds[p][i]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Queue free ammo to be tested against a player. All of a player's candidates have to
+         * share a shape to go in one batch, so any that don't are tested on the spot.
+         */
+        private void addCandidate(Player p, Ammo a) {
+            final int count = candidateCounts[p.id];
+
+            if ((count > 0) && (a.shape != candidateShapes[p.id])) {
+                testCount += 1;
+
+                final int result = p.test(a);
+
+                rejects[result] += 1;
+
+                if (result == Shape.OVERLAP) {
+                    addPickup(p.id, a.id);
+                }
+
+                return;
+            }
+
+            if (count == candidateIds[p.id].length) {
+                candidateX[p.id] = Arrays.copyOf(candidateX[p.id], count * 2);
+                candidateY[p.id] = Arrays.copyOf(candidateY[p.id], count * 2);
+                candidateIds[p.id] = Arrays.copyOf(candidateIds[p.id], count * 2);
+            }
+
+            candidateShapes[p.id] = a.shape;
+            candidateX[p.id][count] = a.getX();
+            candidateY[p.id][count] = a.getY();
+            candidateIds[p.id][count] = a.id;
+            candidateCounts[p.id] = count + 1;
+        }
+
+        private void addPickup(int player, int ammo) {
+            if (pickupCount == pickups.length) {
+                pickups = Arrays.copyOf(pickups, pickupCount * 2);
+            }
+
+            pickups[pickupCount++] = ((long)player << 32) | ammo;
+        }
+
+        @Override
+        public void visit(Sprite sprite, Sprite other) {
+            final Player p = (Player) sprite;
+            final Ammo a = (Ammo) other;
+
+            pairCount += 1;
+
+            if (a.isLive()) {
+                Player shooter = a.getShooter();
+
+                if (p == shooter) {
+                    return;
+                }
+
+                testCount += 1;
+
+                // Live ammo is fast enough to pass through a player in one tick
+                final int result = a.sweptTest(p);
+
+                rejects[result] += 1;
+
+                if (result == Shape.OVERLAP) {
+                    if (scorerCount == scorers.length) {
+                        scorers = Arrays.copyOf(scorers, scorerCount * 2);
+                        victims = Arrays.copyOf(victims, scorerCount * 2);
+                    }
+
+                    victims[scorerCount] = p;
+                    scorers[scorerCount++] = shooter;
+                }
+            } else if ((a.getShooter() == null) && !p.isLoaded()) {
+                addCandidate(p, a);
+            }
+        }
+    }
+
+    @Override
+    public float[] drag(int x, int y, float xVel, float yVel) {
+        float[] out = new float[2];
+
+        drag(x, y, xVel, yVel, out);
+
+        return out;
+    }
+
+    @Override
+    public void drag(int x, int y, float xVel, float yVel, float[] out) {
+        out[0] = axisDrag(xVel, yVel);
+        out[1] = axisDrag(yVel, xVel);
+    }
+
+    @Override
+    public void dragAll(float[] x, float[] y, float[] xVel, float[] yVel, int from, int to, float[] scratch) {
+        for (int i = from; i < to; i++) {
+            final float xDrag = axisDrag(xVel[i], yVel[i]);
+            final float yDrag = axisDrag(yVel[i], xVel[i]);
+
+            xVel[i] += xDrag;
+            yVel[i] += yDrag;
+        }
+    }
+
+    /**
+     * Calculate the drag along one axis.
+     * @param along the velocity along the axis
+     * @param across the velocity along the other axis
+     * @return the drag along the axis
+     */
+    private static float axisDrag(float along, float across) {
+        // The sign for the drag is the opposite of the velocity
+        final int sign = along < 0 ? 1 : -1;
+
+        if ((along != 0) && (across != 0)) {
+            final float magnitude = Utils.magnitude(along, across);
+
+            return Math.min(Math.abs(along), Math.abs(along) / magnitude * DRAG) * sign;
+        } else {
+            return Math.min(Math.abs(along), DRAG) * sign;
+        }
+    }
+}
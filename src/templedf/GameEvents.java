@@ -0,0 +1,101 @@
+package templedf;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for the simulation, so that ticks and what happened in them can be
+ * lined up against GC pauses, safepoints and everything else the JVM records. Each event is
+ * only filled in after {@link Event#shouldCommit()} says the recording wants it, so with
+ * recording off the events cost nothing beyond the check. The {@code spheroids.jfc} settings
+ * file at the top of the project enables them along with the JVM events worth correlating
+ * them with.
+ */
+public final class GameEvents {
+    private static final String CATEGORY = "Spheroids";
+
+    private GameEvents() {
+    }
+
+    @Name("templedf.Tick")
+    @Label("Tick")
+    @Description("One tick of the simulation")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class Tick extends Event {
+        @Label("Tick")
+        long tick;
+
+        @Label("Live Ammo")
+        @Description("Ammo in flight at the end of the tick")
+        int liveAmmo;
+
+        @Label("Moving Sprites")
+        @Description("Sprites that moved on their own during the tick")
+        int movingSprites;
+    }
+
+    @Name("templedf.Hit")
+    @Label("Hit")
+    @Description("A player was hit by another player's ammo")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class Hit extends Event {
+        @Label("Tick")
+        long tick;
+
+        @Label("Shooter")
+        int shooter;
+
+        @Label("Victim")
+        int victim;
+    }
+
+    @Name("templedf.Load")
+    @Label("Ammo Load")
+    @Description("A player picked up a piece of ammo")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class Load extends Event {
+        @Label("Player")
+        int player;
+
+        @Label("Ammo")
+        @Description("The ammo's entity ID")
+        int ammo;
+    }
+
+    @Name("templedf.Shoot")
+    @Label("Shot")
+    @Description("A player shot the ammo it was holding")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class Shoot extends Event {
+        @Label("Player")
+        int player;
+
+        @Label("Ammo")
+        @Description("The ammo's entity ID")
+        int ammo;
+
+        @Label("X Velocity")
+        float xVelocity;
+
+        @Label("Y Velocity")
+        float yVelocity;
+    }
+
+    @Name("templedf.Reset")
+    @Label("Round Reset")
+    @Description("The pause between rounds while the score is showing, lasting as long as the pause really did")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class Reset extends Event {
+        @Label("Tick")
+        long tick;
+    }
+}
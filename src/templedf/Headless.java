@@ -0,0 +1,173 @@
+package templedf;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Runs the engine without a display, as fast as it will go. Each round is played until a player
+ * is hit or the tick limit runs out. The players are bots, whose input goes through the same
+ * queue and per-tick frames as the keyboard's. If a replay file is given, the match is recorded
+ * to it for {@link ReplayPlayer}. Usage: {@code Headless [rounds [seed [replay]]]}
+ */
+public class Headless {
+    /**
+     * One minute of game time at the real-time tick rate.
+     */
+    public static final long MAX_ROUND_TICKS = 6000L;
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        final int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        final long seed = args.length > 1 ? Long.parseLong(args[1]) : new Random().nextLong();
+        final Engine engine = new Engine(seed);
+        final RandomBot bot = new RandomBot(new Random(seed), engine.getPlayers().length);
+        final ReplayRecorder recorder = args.length > 2 ? new ReplayRecorder(Paths.get(args[2]), engine) : null;
+        final int[] wins = new int[engine.getPlayers().length];
+        int timeouts = 0;
+        final long start = System.nanoTime();
+
+        for (int r = 0; r < rounds; r++) {
+            final int winner = playRound(engine, bot, MAX_ROUND_TICKS, recorder);
+
+            if (winner < 0) {
+                timeouts += 1;
+            } else {
+                wins[winner] += 1;
+            }
+
+            if (recorder != null) {
+                recorder.restart();
+            } else {
+                engine.restart();
+            }
+        }
+
+        if (recorder != null) {
+            recorder.close();
+        }
+
+        final double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("seed %d: %d rounds, %d ticks in %.2f s (%.0f ticks/s, %.0f rounds/min)%n",
+                seed, rounds, engine.getTick(), seconds, engine.getTick() / seconds, rounds / seconds * 60);
+
+        for (int p = 0; p < wins.length; p++) {
+            System.out.printf("player %d: %d wins%n", p, wins[p]);
+        }
+
+        System.out.printf("timeouts: %d%n", timeouts);
+    }
+
+    /**
+     * Tick the engine until the round is over or the tick limit is reached.
+     * @param engine the engine, at the start of a round
+     * @param input the controls
+     * @param maxTicks the most ticks to play
+     * @return the index of the first player whose score went up, or -1 if nobody scored
+     */
+    public static int playRound(Engine engine, Input input, long maxTicks) {
+        final int[] before = scores(engine);
+
+        for (long t = 0; (t < maxTicks) && !engine.isRoundOver(); t++) {
+            engine.tick(input);
+        }
+
+        return winner(engine, before);
+    }
+
+    /**
+     * Tick the engine until the round is over or the tick limit is reached, with the bot's
+     * key presses going through its queue and frame.
+     * @param engine the engine, at the start of a round
+     * @param bot the bot playing every player
+     * @param maxTicks the most ticks to play
+     * @param recorder the recorder to record the controls with, or null
+     * @return the index of the first player whose score went up, or -1 if nobody scored
+     * @throws IOException if the recording can't be written
+     */
+    private static int playRound(Engine engine, RandomBot bot, long maxTicks, ReplayRecorder recorder)
+            throws IOException {
+        final int[] before = scores(engine);
+
+        bot.frame.reset();
+
+        for (long t = 0; (t < maxTicks) && !engine.isRoundOver(); t++) {
+            bot.act();
+            bot.queue.drain(bot.frame, Long.MAX_VALUE);
+            engine.tick(recorder != null ? recorder.record(bot.frame) : bot.frame);
+        }
+
+        return winner(engine, before);
+    }
+
+    private static int[] scores(Engine engine) {
+        final int[] scores = new int[engine.getPlayers().length];
+
+        for (int p = 0; p < scores.length; p++) {
+            scores[p] = engine.getScore(p);
+        }
+
+        return scores;
+    }
+
+    private static int winner(Engine engine, int[] before) {
+        for (int p = 0; p < before.length; p++) {
+            if (engine.getScore(p) > before[p]) {
+                return p;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * A bot that holds a random direction for a random number of ticks and shoots at random,
+     * by pressing and releasing keys.
+     */
+    private static class RandomBot {
+        private final Random rand;
+        private final InputQueue queue = new InputQueue(64);
+        private final InputFrame frame;
+        private final int[] xDir;
+        private final int[] yDir;
+        private final int[] hold;
+
+        private RandomBot(Random rand, int players) {
+            this.rand = rand;
+            frame = new InputFrame(players);
+            xDir = new int[players];
+            yDir = new int[players];
+            hold = new int[players];
+        }
+
+        /**
+         * Queue this tick's key presses and releases.
+         */
+        void act() {
+            for (int p = 0; p < xDir.length; p++) {
+                if (hold[p]-- <= 0) {
+                    press(p, xDir[p], InputFrame.LEFT, InputFrame.RIGHT, false);
+                    press(p, yDir[p], InputFrame.UP, InputFrame.DOWN, false);
+                    xDir[p] = rand.nextInt(3) - 1;
+                    yDir[p] = rand.nextInt(3) - 1;
+                    hold[p] = rand.nextInt(10, 100);
+                    press(p, xDir[p], InputFrame.LEFT, InputFrame.RIGHT, true);
+                    press(p, yDir[p], InputFrame.UP, InputFrame.DOWN, true);
+                }
+
+                if (rand.nextInt(50) == 0) {
+                    queue.offer(0L, InputFrame.event(p, InputFrame.SHOOT, true));
+                    queue.offer(0L, InputFrame.event(p, InputFrame.SHOOT, false));
+                }
+            }
+        }
+
+        private void press(int player, int dir, int negative, int positive, boolean pressed) {
+            if (dir != 0) {
+                queue.offer(0L, InputFrame.event(player, dir < 0 ? negative : positive, pressed));
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package templedf;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values, such as durations in nanoseconds. Values are
+ * counted in log-linear buckets: each power of two is split into 16 equal buckets, so any
+ * percentile is accurate to within about 6% while the whole histogram is under a thousand
+ * counters. Recording a value is one atomic increment, plus a compare-and-set when it's a new
+ * maximum, so any number of threads can record while others read.
+ * <p>
+ * Reads aren't atomic across buckets, so a percentile taken while values are being recorded
+ * may count some of them and not others.
+ */
+public final class Histogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS + 1) * SUB_BUCKETS;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Count a value. Negative values count as zero.
+     * @param value the value
+     */
+    public void record(long value) {
+        final long v = Math.max(0L, value);
+
+        counts.incrementAndGet(bucket(v));
+        count.incrementAndGet();
+        sum.addAndGet(v);
+
+        long m = max.get();
+
+        while ((v > m) && !max.compareAndSet(m, v)) {
+            m = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the mean of the recorded values.
+     * @return the mean, or 0 if nothing has been recorded
+     */
+    public double getMean() {
+        final long count = this.count.get();
+
+        return count == 0 ? 0 : (double)sum.get() / count;
+    }
+
+    /**
+     * Get the value that the given percentage of the recorded values are at or below. The
+     * result is the top of the bucket the percentile falls in, and never more than the maximum.
+     * @param percentile the percentile, from 0 to 100
+     * @return the value, or 0 if nothing has been recorded
+     */
+    public long getPercentile(double percentile) {
+        long total = 0L;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+
+        if (total == 0) {
+            return 0L;
+        }
+
+        final long rank = Math.max(1L, (long)Math.ceil(total * percentile / 100));
+        long seen = 0L;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Forget everything recorded so far. Values recorded during a reset may be partly counted.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0L);
+        }
+
+        count.set(0L);
+        sum.set(0L);
+        max.set(0L);
+    }
+
+    /**
+     * Find the bucket for a value: values below 16 get a bucket each, and above that the
+     * bucket is the position of the highest set bit and the four bits below it.
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int)value;
+        }
+
+        final int top = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+
+        return (top - SUB_BITS + 1) * SUB_BUCKETS + (int)((value >>> (top - SUB_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Get the largest value that falls in a bucket.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        final int shift = bucket / SUB_BUCKETS - 1;
+
+        // The top buckets reach past the largest long
+        if (shift >= Long.SIZE - SUB_BITS - 1) {
+            return Long.MAX_VALUE;
+        }
+
+        final long lower = (long)(SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,17 @@
+package templedf;
+
+/**
+ * The controls for each player for one tick. Directions are -1, 0 or 1.
+ */
+public interface Input {
+    int getXDir(int player);
+
+    int getYDir(int player);
+
+    /**
+     * Whether the player wants to shoot. Implementations may treat this as consuming the request.
+     * @param player the player index
+     * @return whether the player shoots this tick
+     */
+    boolean isShooting(int player);
+}
@@ -0,0 +1,173 @@
+package templedf;
+
+/**
+ * The controls for every player for one tick, built by applying input events in order. The keys
+ * that are held down carry over from one tick to the next. A direction that's pressed and
+ * released within a single tick still counts for that tick, and so does a shot, so a quick tap
+ * is never lost no matter how slow the tick rate is.
+ * <p>
+ * Events are packed into an int by {@link #event(int, int, boolean)}: the player, the action,
+ * and whether it's a press or a release. A player's controls for a whole tick pack into a
+ * byte with {@link #encode(Input, int)}, for sending and recording.
+ */
+public final class InputFrame implements Input {
+    public static final int UP = 0;
+    public static final int DOWN = 1;
+    public static final int LEFT = 2;
+    public static final int RIGHT = 3;
+    public static final int SHOOT = 4;
+    // Which way each key is held, carried over between ticks
+    private final int[] heldX;
+    private final int[] heldY;
+    // The controls for this tick
+    private final int[] xDir;
+    private final int[] yDir;
+    private final boolean[] shoot;
+    // Whether each direction was pressed during this tick
+    private final boolean[] pressedX;
+    private final boolean[] pressedY;
+
+    public InputFrame(int players) {
+        heldX = new int[players];
+        heldY = new int[players];
+        xDir = new int[players];
+        yDir = new int[players];
+        shoot = new boolean[players];
+        pressedX = new boolean[players];
+        pressedY = new boolean[players];
+    }
+
+    /**
+     * Encode an input event.
+     * @param player the player index
+     * @param action one of {@link #UP}, {@link #DOWN}, {@link #LEFT}, {@link #RIGHT} and
+     *               {@link #SHOOT}
+     * @param pressed whether the key was pressed rather than released
+     * @return the encoded event
+     */
+    public static int event(int player, int action, boolean pressed) {
+        return (player << 4) | (action << 1) | (pressed ? 1 : 0);
+    }
+
+    /**
+     * Pack a player's controls into a byte: two bits each for the x and y directions, and one
+     * for shooting.
+     * @param input the controls
+     * @param player the player index
+     * @return the packed controls
+     */
+    public static byte encode(Input input, int player) {
+        return (byte)((input.getXDir(player) + 1) | ((input.getYDir(player) + 1) << 2) |
+                (input.isShooting(player) ? 0x10 : 0));
+    }
+
+    /**
+     * Set a player's controls for this tick from a byte packed by {@link #encode(Input, int)}.
+     * This doesn't change which keys are held.
+     * @param player the player index
+     * @param input the packed controls
+     */
+    public void set(int player, byte input) {
+        xDir[player] = (input & 0x3) - 1;
+        yDir[player] = ((input >> 2) & 0x3) - 1;
+        shoot[player] = (input & 0x10) != 0;
+    }
+
+    /**
+     * Start a new tick with the keys that are still held.
+     */
+    void nextTick() {
+        for (int p = 0; p < heldX.length; p++) {
+            xDir[p] = heldX[p];
+            yDir[p] = heldY[p];
+            shoot[p] = false;
+            pressedX[p] = false;
+            pressedY[p] = false;
+        }
+    }
+
+    /**
+     * Apply an event to this tick. As with the keyboard, pressing a direction while the
+     * opposite one is held does nothing, and releasing a direction only counts if it's the one
+     * that's held.
+     * @param event the encoded event
+     */
+    public void apply(int event) {
+        final int player = event >>> 4;
+        final int action = (event >> 1) & 0x7;
+        final boolean pressed = (event & 1) != 0;
+
+        switch (action) {
+            case UP:
+                applyY(player, -1, pressed);
+                break;
+            case DOWN:
+                applyY(player, 1, pressed);
+                break;
+            case LEFT:
+                applyX(player, -1, pressed);
+                break;
+            case RIGHT:
+                applyX(player, 1, pressed);
+                break;
+            case SHOOT:
+                shoot[player] |= pressed;
+                break;
+        }
+    }
+
+    private void applyX(int player, int dir, boolean pressed) {
+        if (pressed && (heldX[player] == 0)) {
+            heldX[player] = dir;
+            xDir[player] = dir;
+            pressedX[player] = true;
+        } else if (!pressed && (heldX[player] == dir)) {
+            heldX[player] = 0;
+
+            if (!pressedX[player]) {
+                xDir[player] = 0;
+            }
+        }
+    }
+
+    private void applyY(int player, int dir, boolean pressed) {
+        if (pressed && (heldY[player] == 0)) {
+            heldY[player] = dir;
+            yDir[player] = dir;
+            pressedY[player] = true;
+        } else if (!pressed && (heldY[player] == dir)) {
+            heldY[player] = 0;
+
+            if (!pressedY[player]) {
+                yDir[player] = 0;
+            }
+        }
+    }
+
+    /**
+     * Release every key.
+     */
+    public void reset() {
+        for (int p = 0; p < heldX.length; p++) {
+            heldX[p] = 0;
+            heldY[p] = 0;
+        }
+
+        nextTick();
+    }
+
+    @Override
+    public int getXDir(int player) {
+        return xDir[player];
+    }
+
+    @Override
+    public int getYDir(int player) {
+        return yDir[player];
+    }
+
+    @Override
+    public boolean isShooting(int player) {
+        return shoot[player];
+    }
+}
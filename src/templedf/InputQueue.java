@@ -0,0 +1,103 @@
+package templedf;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free ring buffer of timestamped input events, with one producer thread, such as the
+ * AWT event thread, and one consumer thread, the simulation. The producer never blocks: if the
+ * ring is full, the event is dropped. The consumer drains the ring into an {@link InputFrame}
+ * once at the start of each tick. Events are encoded with {@link InputFrame#event(int, int,
+ * boolean)}.
+ * <p>
+ * Each side publishes its position with a release store and only reads the other side's
+ * position when its cached copy says the ring looks full or empty, so the common case touches
+ * no shared state.
+ */
+public final class InputQueue {
+    private final long[] times;
+    private final int[] events;
+    private final int mask;
+    // The next slot to write, only advanced by the producer
+    private final AtomicLong tail = new AtomicLong();
+    // The next slot to read, only advanced by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // The producer's last look at the head
+    private long cachedHead = 0L;
+    // The consumer's last look at the tail
+    private long cachedTail = 0L;
+
+    /**
+     * Create a queue.
+     * @param capacity the most events the queue can hold, which must be a power of two
+     */
+    public InputQueue(int capacity) {
+        if ((capacity <= 0) || (Integer.bitCount(capacity) != 1)) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+
+        times = new long[capacity];
+        events = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Add an event. Only the producer's thread may call this.
+     * @param time when the event happened, in {@link System#nanoTime()} terms
+     * @param event the encoded event
+     * @return whether there was room for the event
+     */
+    public boolean offer(long time, int event) {
+        final long tail = this.tail.get();
+
+        if (tail - cachedHead > mask) {
+            cachedHead = head.get();
+
+            if (tail - cachedHead > mask) {
+                return false;
+            }
+        }
+
+        times[(int)tail & mask] = time;
+        events[(int)tail & mask] = event;
+        this.tail.lazySet(tail + 1);
+
+        return true;
+    }
+
+    /**
+     * Start a new tick in the frame and apply every queued event that happened up to the given
+     * time. Later events stay queued for the next tick. Only the consumer's thread may call
+     * this.
+     * @param frame the frame for this tick
+     * @param until the latest event time to apply, inclusive
+     * @return the number of events applied
+     */
+    public int drain(InputFrame frame, long until) {
+        frame.nextTick();
+
+        long head = this.head.get();
+
+        if (head == cachedTail) {
+            cachedTail = tail.get();
+        }
+
+        final long start = head;
+
+        while ((head < cachedTail) && (times[(int)head & mask] - until <= 0)) {
+            frame.apply(events[(int)head & mask]);
+            head += 1;
+        }
+
+        this.head.lazySet(head);
+
+        return (int)(head - start);
+    }
+
+    /**
+     * Throw away every queued event. Only the consumer's thread may call this.
+     */
+    public void clear() {
+        cachedTail = tail.get();
+        head.lazySet(cachedTail);
+    }
+}
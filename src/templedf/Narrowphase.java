@@ -0,0 +1,88 @@
+package templedf;
+
+/**
+ * Batched SAT collision testing of one shape against many candidates that share a shape, such as
+ * a player against all of the ammo near it. The engine tests each player against the free ammo
+ * it might pick up this way; live ammo moves too fast for a static test and goes through
+ * {@link PhysicsWorld#sweptTest} instead. This class is the scalar implementation. When the
+ * {@code jdk.incubator.vector} module is available, {@link #get()} returns a subclass that tests
+ * several candidates per instruction instead; it produces exactly the same results.
+ */
+public class Narrowphase {
+    private static final Narrowphase INSTANCE = create();
+
+    Narrowphase() {
+    }
+
+    /**
+     * Get the fastest narrowphase available in this JVM. Setting the
+     * {@code spheroids.vector} system property to {@code false} forces the scalar implementation.
+     * @return the narrowphase
+     */
+    public static Narrowphase get() {
+        return INSTANCE;
+    }
+
+    private static Narrowphase create() {
+        if (Boolean.parseBoolean(System.getProperty("spheroids.vector", "true")) &&
+                ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (Narrowphase) Class.forName("templedf.VectorNarrowphase").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Fall back to the scalar implementation
+            }
+        }
+
+        return new Narrowphase();
+    }
+
+    /**
+     * Test a shape against a batch of candidates of another shape.
+     * @param a the shape being tested
+     * @param ax the x coordinate of the center of a
+     * @param ay the y coordinate of the center of a
+     * @param b the shape of every candidate
+     * @param bx the x coordinates of the centers of the candidates
+     * @param by the y coordinates of the centers of the candidates
+     * @param count the number of candidates
+     * @param hits set to whether a overlaps each candidate
+     * @return the number of candidates that a overlaps
+     */
+    public int overlaps(Shape a, float ax, float ay, Shape b, float[] bx, float[] by, int count, boolean[] hits) {
+        return test(a.pair(b), ax, ay, bx, by, count, hits, null);
+    }
+
+    /**
+     * Test a shape against a batch of candidates, like
+     * {@link #overlaps(Shape, float, float, Shape, float[], float[], int, boolean[])}, and count
+     * the results of {@link Shape.Pair#test(float, float)}.
+     * @param pair the pair of a's shape and the candidates' shape
+     * @param results incremented at each result, {@link Shape#OVERLAP} or the tier that rejected
+     *     the pair, by the number of candidates with that result, or null
+     * @return the number of candidates that a overlaps
+     */
+    int test(Shape.Pair pair, float ax, float ay, float[] bx, float[] by, int count, boolean[] hits, int[] results) {
+        return test(pair, ax, ay, bx, by, 0, count, hits, results);
+    }
+
+    static int test(Shape.Pair pair, float ax, float ay, float[] bx, float[] by, int from, int to, boolean[] hits,
+            int[] results) {
+        int count = 0;
+
+        for (int i = from; i < to; i++) {
+            final int result = pair.test(bx[i] - ax, by[i] - ay);
+
+            hits[i] = result == Shape.OVERLAP;
+
+            if (hits[i]) {
+                count += 1;
+            }
+
+            if (results != null) {
+                results[result] += 1;
+            }
+        }
+
+        return count;
+    }
+}
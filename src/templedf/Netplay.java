@@ -0,0 +1,432 @@
+package templedf;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lockstep netplay for two machines over UDP. Each machine runs its own copy of the engine and
+ * controls one player, and the engines stay in sync because they're deterministic and tick with
+ * exactly the same inputs. A player's input for a tick is sampled {@code inputDelay} ticks
+ * ahead of time and sent to the peer, and an engine only ticks once it has both players'
+ * inputs for that tick, so with a delay longer than the trip across the network neither side
+ * ever waits.
+ * <p>
+ * Every packet carries all of the sender's inputs that the peer hasn't acknowledged yet, so a
+ * lost packet costs nothing as long as a later one gets through. Each tick's input is a single
+ * byte from {@link InputFrame#encode(Input, int)}, and runs of identical inputs, which are the
+ * norm, are sent as one byte of input and one byte of run length. A packet is a 14 byte header
+ * followed by the runs:
+ * <pre>
+ *   int    the first tick whose input is in the packet
+ *   int    the number of ticks the sender has from the peer, which acknowledges them all
+ *   int    the sender's {@link Shape#ANGLES}, since engines with different values desync
+ *   short  the number of ticks of input in the packet
+ *   (byte input, byte run length)...
+ * </pre>
+ * A packet that's too short, or whose runs don't add up to its tick count, is dropped as if it
+ * had been lost. The socket is non-blocking and everything runs on the caller's thread. For
+ * testing, outgoing packets can be randomly dropped or held back to simulate a bad network; see
+ * {@link #simulate(double, long, Random)}.
+ */
+public class Netplay {
+    /**
+     * The most ticks of input kept for each player.
+     */
+    public static final int HISTORY = 256;
+    private static final int HEADER = 14;
+    private static final int MAX_PACKET = HEADER + HISTORY * 2;
+    // How long to wait before resending inputs that haven't been acknowledged
+    private static final long RESEND_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    // The most packets that can be held back at once to simulate latency
+    private static final int MAX_DELAYED = 64;
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final SocketAddress remote;
+    private final int localPlayer;
+    private final int inputDelay;
+    // Each player's input for the last HISTORY ticks, indexed by tick modulo HISTORY
+    private final byte[] localInputs = new byte[HISTORY];
+    private final byte[] remoteInputs = new byte[HISTORY];
+    // We have our own inputs for ticks before this one
+    private int localTicks;
+    // We have the peer's inputs for ticks before this one
+    private int remoteTicks;
+    // The peer has our inputs for ticks before this one
+    private int remoteAck = 0;
+    // The peer knew we had its inputs before this tick as of the last packet we sent
+    private int sentAck = 0;
+    // The next tick to simulate
+    private int tick = 0;
+    private long lastSend = Long.MIN_VALUE;
+    private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(MAX_PACKET);
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(MAX_PACKET);
+    private final InputFrame input = new InputFrame(2);
+    // Simulated network conditions
+    private double loss = 0;
+    private long latencyNanos = 0L;
+    private Random random = null;
+    private final ByteBuffer[] delayed = new ByteBuffer[MAX_DELAYED];
+    private final long[] delayedUntil = new long[MAX_DELAYED];
+    private int delayedHead = 0;
+    private int delayedCount = 0;
+    private long packetsSent = 0L;
+    private long packetsReceived = 0L;
+    private long packetsDropped = 0L;
+    private long packetsMalformed = 0L;
+    private long bytesSent = 0L;
+
+    /**
+     * Start netplay on a bound channel.
+     * @param channel the channel, which is switched to non-blocking mode
+     * @param remote the peer's address
+     * @param localPlayer the index of the player controlled on this machine, 0 or 1
+     * @param inputDelay how many ticks ahead each input is sampled
+     * @throws IOException if the channel can't be set up
+     */
+    public Netplay(DatagramChannel channel, SocketAddress remote, int localPlayer, int inputDelay) throws IOException {
+        if ((localPlayer < 0) || (localPlayer > 1)) {
+            throw new IllegalArgumentException("local player must be 0 or 1: " + localPlayer);
+        }
+
+        // Both sides can be up to a delay ahead of the other, and neither can overrun the history
+        if ((inputDelay < 1) || (inputDelay > HISTORY / 4)) {
+            throw new IllegalArgumentException("input delay must be from 1 to " + HISTORY / 4 + ": " + inputDelay);
+        }
+
+        this.channel = channel;
+        this.remote = remote;
+        this.localPlayer = localPlayer;
+        this.inputDelay = inputDelay;
+        // Nobody has pressed anything before the first input is sampled
+        localTicks = inputDelay;
+        remoteTicks = inputDelay;
+        channel.configureBlocking(false);
+        selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+
+        for (int i = 0; i < MAX_DELAYED; i++) {
+            delayed[i] = ByteBuffer.allocateDirect(MAX_PACKET);
+        }
+    }
+
+    /**
+     * Simulate a bad network by dropping and delaying the packets this side sends. A packet that
+     * would be held back when the most packets are already held back is dropped.
+     * @param loss the chance of dropping each packet, from 0 to 1
+     * @param latencyMillis how long to hold back each packet
+     * @param random the source of randomness for dropping packets
+     */
+    public void simulate(double loss, long latencyMillis, Random random) {
+        this.loss = loss;
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        this.random = random;
+    }
+
+    /**
+     * Get the next tick to simulate.
+     * @return the tick
+     */
+    public int getTick() {
+        return tick;
+    }
+
+    public long getPacketsSent() {
+        return packetsSent;
+    }
+
+    public long getPacketsReceived() {
+        return packetsReceived;
+    }
+
+    /**
+     * Get the number of packets dropped by the simulated network.
+     * @return the dropped packet count
+     */
+    public long getPacketsDropped() {
+        return packetsDropped;
+    }
+
+    /**
+     * Get the number of packets from the peer that were dropped because they were malformed.
+     * @return the malformed packet count
+     */
+    public long getPacketsMalformed() {
+        return packetsMalformed;
+    }
+
+    /**
+     * Get the number of bytes sent, not counting UDP and IP headers.
+     * @return the byte count
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Exchange packets with the peer and tick the engine if both players' inputs for the next
+     * tick are here. When it ticks, the local player's input is sampled for the tick
+     * {@code inputDelay} ticks from now.
+     * @param engine the engine
+     * @param local the local player's controls
+     * @return whether the engine ticked
+     * @throws IOException if the channel fails
+     */
+    public boolean tick(Engine engine, Input local) throws IOException {
+        receive();
+
+        if (tick >= remoteTicks) {
+            send(false);
+
+            return false;
+        }
+
+        addLocalInput(InputFrame.encode(local, localPlayer));
+        send(true);
+        input.set(localPlayer, localInputs[tick % HISTORY]);
+        input.set(1 - localPlayer, remoteInputs[tick % HISTORY]);
+        engine.tick(input);
+        tick += 1;
+
+        return true;
+    }
+
+    /**
+     * Wait until a packet arrives, a held back packet is due to be sent, or the timeout runs
+     * out, whichever comes first.
+     * @param timeoutMillis the most time to wait
+     * @throws IOException if the selector fails
+     */
+    public void await(long timeoutMillis) throws IOException {
+        long timeout = timeoutMillis;
+
+        if (delayedCount > 0) {
+            final long due = TimeUnit.NANOSECONDS.toMillis(delayedUntil[delayedHead] - System.nanoTime());
+
+            timeout = Math.max(1L, Math.min(timeout, due));
+        }
+
+        selector.select(timeout);
+        selector.selectedKeys().clear();
+        flushDelayed();
+    }
+
+    /**
+     * Keep exchanging packets until the peer has every input we've sampled, so that it can
+     * catch up with us after we stop ticking.
+     * @param timeoutMillis the most time to keep going
+     * @return whether the peer has every input
+     * @throws IOException if the channel fails
+     */
+    public boolean finish(long timeoutMillis) throws IOException {
+        final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        while ((remoteAck < localTicks) && (System.nanoTime() - end < 0)) {
+            receive();
+            send(false);
+            await(1L);
+        }
+
+        return remoteAck >= localTicks;
+    }
+
+    public void close() throws IOException {
+        selector.close();
+        channel.close();
+    }
+
+    private void receive() throws IOException {
+        flushDelayed();
+
+        while (true) {
+            receiveBuffer.clear();
+
+            final SocketAddress from = channel.receive(receiveBuffer);
+
+            if (from == null) {
+                break;
+            }
+
+            if (from.equals(remote)) {
+                receiveBuffer.flip();
+
+                if (readPacket(receiveBuffer)) {
+                    packetsReceived += 1;
+                } else {
+                    packetsMalformed += 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Send our unacknowledged inputs, if there are any or the peer hasn't heard our latest
+     * acknowledgement. A send that isn't for a new input is only made once the resend
+     * interval has passed since the last one.
+     */
+    private void send(boolean newInput) throws IOException {
+        final long now = System.nanoTime();
+
+        if ((remoteAck >= localTicks) && (sentAck == remoteTicks)) {
+            return;
+        }
+
+        if (!newInput && (now - lastSend < RESEND_NANOS)) {
+            return;
+        }
+
+        lastSend = now;
+        sendBuffer.clear();
+        writePacket(sendBuffer);
+        sendBuffer.flip();
+        packetsSent += 1;
+        bytesSent += sendBuffer.remaining();
+
+        if (((random != null) && (random.nextDouble() < loss)) ||
+                ((latencyNanos > 0) && (delayedCount == MAX_DELAYED))) {
+            // Sending a packet right away when there's no room to hold it back would reorder it
+            packetsDropped += 1;
+        } else if (latencyNanos > 0) {
+            final int slot = (delayedHead + delayedCount) % MAX_DELAYED;
+
+            delayed[slot].clear();
+            delayed[slot].put(sendBuffer);
+            delayed[slot].flip();
+            delayedUntil[slot] = now + latencyNanos;
+            delayedCount += 1;
+        } else {
+            channel.send(sendBuffer, remote);
+        }
+    }
+
+    private void flushDelayed() throws IOException {
+        final long now = System.nanoTime();
+
+        while ((delayedCount > 0) && (now - delayedUntil[delayedHead] >= 0)) {
+            channel.send(delayed[delayedHead], remote);
+            delayedHead = (delayedHead + 1) % MAX_DELAYED;
+            delayedCount -= 1;
+        }
+    }
+
+    /**
+     * Sample our input for the next tick.
+     */
+    void addLocalInput(byte input) {
+        localInputs[localTicks % HISTORY] = input;
+        localTicks += 1;
+    }
+
+    /**
+     * Replace one of our inputs that hasn't been simulated yet, for setting up benchmarks.
+     */
+    void setLocalInput(int tick, byte input) {
+        if ((tick < this.tick) || (tick >= localTicks)) {
+            throw new IllegalArgumentException("tick " + tick + " isn't pending");
+        }
+
+        localInputs[tick % HISTORY] = input;
+    }
+
+    /**
+     * Forget every input from the peer, as if no packet had arrived yet, for benchmarking
+     * {@link #readPacket(ByteBuffer)} over and over on the same packet.
+     */
+    void forgetRemoteInputs() {
+        remoteTicks = inputDelay;
+        remoteAck = 0;
+    }
+
+    /**
+     * Write a packet with every input the peer hasn't acknowledged.
+     */
+    void writePacket(ByteBuffer buffer) {
+        final int from = remoteAck;
+        final int count = localTicks - from;
+
+        buffer.putInt(from);
+        buffer.putInt(remoteTicks);
+        buffer.putInt(Shape.ANGLES);
+        buffer.putShort((short)count);
+
+        int t = from;
+
+        while (t < localTicks) {
+            final byte value = localInputs[t % HISTORY];
+            int run = 1;
+
+            while ((t + run < localTicks) && (run < 255) && (localInputs[(t + run) % HISTORY] == value)) {
+                run += 1;
+            }
+
+            buffer.put(value);
+            buffer.put((byte)run);
+            t += run;
+        }
+
+        sentAck = remoteTicks;
+    }
+
+    /**
+     * Read a packet from the peer, keeping any inputs that are new to us. A malformed packet is
+     * ignored entirely.
+     * @return whether the packet was well formed
+     * @throws IOException if the peer's engine turns sprites to a different number of angles
+     */
+    boolean readPacket(ByteBuffer buffer) throws IOException {
+        if ((buffer.remaining() < HEADER) || ((buffer.remaining() - HEADER) % 2 != 0)) {
+            return false;
+        }
+
+        final int from = buffer.getInt();
+        final int ack = buffer.getInt();
+        final int angles = buffer.getInt();
+        final int count = buffer.getShort() & 0xFFFF;
+        int total = 0;
+
+        for (int i = buffer.position(); i < buffer.limit(); i += 2) {
+            final int run = buffer.get(i + 1) & 0xFF;
+
+            if (run == 0) {
+                return false;
+            }
+
+            total += run;
+        }
+
+        if ((total != count) || (from < 0) || (ack < 0)) {
+            return false;
+        }
+
+        // Carrying on would desync the engines without anyone noticing
+        if (angles != Shape.ANGLES) {
+            throw new IOException("peer uses " + angles + " angles, not " + Shape.ANGLES);
+        }
+
+        remoteAck = Math.max(remoteAck, Math.min(ack, localTicks));
+
+        int t = from;
+
+        while ((t < from + count) && buffer.hasRemaining()) {
+            final byte value = buffer.get();
+            final int run = buffer.get() & 0xFF;
+
+            for (int i = 0; i < run; i++, t++) {
+                // Inputs arrive in order within a packet, and the sender starts from the
+                // oldest one we haven't acknowledged, so there are never any gaps
+                if (t == remoteTicks) {
+                    remoteInputs[t % HISTORY] = value;
+                    remoteTicks += 1;
+                }
+            }
+        }
+
+        return true;
+    }
+
+}
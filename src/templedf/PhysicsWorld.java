@@ -0,0 +1,592 @@
+package templedf;
+
+import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A structure-of-arrays store for the physical state of sprites. Position, velocity, bounds and
+ * heading live in parallel primitive arrays indexed by entity ID, and {@link #step(int, int)}
+ * integrates a range of entities in a few tight loops. Sprites are views over the store: every
+ * sprite starts out in a private world of its own, and {@link #add(Sprite)} moves it into a
+ * shared one.
+ * <p>
+ * Every entity in a world uses the world's drag model, which must produce no drag for an entity
+ * that isn't moving.
+ * <p>
+ * The world also remembers the path each entity took during its last step, so that a fast
+ * entity can be tested for collisions all along its path rather than only where it ended up.
+ * See {@link #sweptTest(int, int, Shape.Pair)}.
+ * <p>
+ * The state that changes as the world steps can be saved to a buffer and restored from it with
+ * {@link #save(ByteBuffer)} and {@link #restore(ByteBuffer)}.
+ */
+public class PhysicsWorld {
+    /**
+     * The number of bytes of saved state per entity.
+     */
+    public static final int ENTITY_STATE_SIZE = 11 * 4;
+    float[] x;
+    float[] y;
+    float[] xVel;
+    float[] yVel;
+    // The direction the entity last moved in
+    float[] xHeading;
+    float[] yHeading;
+    private final DragModel drag;
+    // For the drag model when a step isn't given a scratch array of its own
+    private final float[] dragScratch = new float[2];
+    private Sprite[] sprites;
+    private int[] minX;
+    private int[] minY;
+    private int[] maxX;
+    private int[] maxY;
+    private boolean[] bounces;
+    // The entity whose position an entity follows, or -1
+    private int[] carrier;
+    private boolean[] moving;
+    private int[] stopped;
+    // The whole pixel position at the start of the last step, and the displacement from there
+    // during the step before any bounce reflected it
+    private int[] lastX;
+    private int[] lastY;
+    private int[] sweepX;
+    private int[] sweepY;
+    private int count = 0;
+
+    public PhysicsWorld(DragModel drag, int capacity) {
+        this.drag = drag;
+        x = new float[capacity];
+        y = new float[capacity];
+        xVel = new float[capacity];
+        yVel = new float[capacity];
+        xHeading = new float[capacity];
+        yHeading = new float[capacity];
+        sprites = new Sprite[capacity];
+        minX = new int[capacity];
+        minY = new int[capacity];
+        maxX = new int[capacity];
+        maxY = new int[capacity];
+        bounces = new boolean[capacity];
+        carrier = new int[capacity];
+        moving = new boolean[capacity];
+        stopped = new int[capacity];
+        lastX = new int[capacity];
+        lastY = new int[capacity];
+        sweepX = new int[capacity];
+        sweepY = new int[capacity];
+    }
+
+    public DragModel getDragModel() {
+        return drag;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Move a sprite into this world, carrying over its current state. The sprite's entity ID is
+     * the number of entities added before it.
+     * @param sprite the sprite to add
+     * @return the sprite's entity ID in this world
+     */
+    public int add(Sprite sprite) {
+        if (sprite.drag != drag) {
+            throw new IllegalArgumentException("sprite uses a different drag model than the world");
+        }
+
+        if (count == x.length) {
+            grow(Math.max(count * 2, 1));
+        }
+
+        final PhysicsWorld from = sprite.world;
+        final int i = count;
+
+        if (from == null) {
+            xHeading[i] = 1f;
+            carrier[i] = -1;
+        } else {
+            x[i] = from.x[sprite.id];
+            y[i] = from.y[sprite.id];
+            xVel[i] = from.xVel[sprite.id];
+            yVel[i] = from.yVel[sprite.id];
+            xHeading[i] = from.xHeading[sprite.id];
+            yHeading[i] = from.yHeading[sprite.id];
+            // Links don't survive the move because the carrier's ID is from the other world
+            carrier[i] = -1;
+        }
+
+        final Rectangle bounds = sprite.bounds;
+
+        sprites[i] = sprite;
+        minX[i] = bounds.x;
+        minY[i] = bounds.y;
+        maxX[i] = bounds.width;
+        maxY[i] = bounds.height;
+        bounces[i] = sprite.bounces();
+        lastX[i] = (int)x[i];
+        lastY[i] = (int)y[i];
+        sweepX[i] = 0;
+        sweepY[i] = 0;
+        sprite.world = this;
+        sprite.id = i;
+        count += 1;
+
+        return i;
+    }
+
+    /**
+     * Make one entity follow another, as when a player is holding a piece of ammo. A carried
+     * entity doesn't integrate on its own; it takes its carrier's position at each step.
+     * @param entity the carried entity
+     * @param carrier the carrying entity, or -1 to release the entity
+     */
+    void carry(int entity, int carrier) {
+        this.carrier[entity] = carrier;
+    }
+
+    /**
+     * Get the entity that an entity follows.
+     * @param entity the carried entity
+     * @return the carrying entity, or -1 if the entity isn't carried
+     */
+    int getCarrier(int entity) {
+        return carrier[entity];
+    }
+
+    /**
+     * Get the whole pixel x coordinate of an entity at the start of the last step.
+     * @param entity the entity
+     * @return where the entity was, or where it was put if it has been put somewhere since
+     */
+    int getLastX(int entity) {
+        return lastX[entity];
+    }
+
+    /**
+     * Get the whole pixel y coordinate of an entity at the start of the last step.
+     * @param entity the entity
+     * @return where the entity was, or where it was put if it has been put somewhere since
+     */
+    int getLastY(int entity) {
+        return lastY[entity];
+    }
+
+    /**
+     * Exchange the IDs of two entities, along with all of their state, so that a range of
+     * entities can be kept dense as entities come and go. Carrier links to either entity aren't
+     * updated, so neither may be carrying anything.
+     * @param a the first entity
+     * @param b the second entity
+     */
+    void swap(int a, int b) {
+        if (a == b) {
+            return;
+        }
+
+        swap(x, a, b);
+        swap(y, a, b);
+        swap(xVel, a, b);
+        swap(yVel, a, b);
+        swap(xHeading, a, b);
+        swap(yHeading, a, b);
+        swap(minX, a, b);
+        swap(minY, a, b);
+        swap(maxX, a, b);
+        swap(maxY, a, b);
+        swap(carrier, a, b);
+        swap(lastX, a, b);
+        swap(lastY, a, b);
+        swap(sweepX, a, b);
+        swap(sweepY, a, b);
+
+        final boolean bounce = bounces[a];
+        final Sprite sprite = sprites[a];
+
+        bounces[a] = bounces[b];
+        bounces[b] = bounce;
+        sprites[a] = sprites[b];
+        sprites[b] = sprite;
+        sprites[a].id = a;
+        sprites[b].id = b;
+    }
+
+    private static void swap(float[] values, int a, int b) {
+        final float value = values[a];
+
+        values[a] = values[b];
+        values[b] = value;
+    }
+
+    private static void swap(int[] values, int a, int b) {
+        final int value = values[a];
+
+        values[a] = values[b];
+        values[b] = value;
+    }
+
+    /**
+     * Put an entity at a new x coordinate without it having travelled there.
+     * @param entity the entity
+     * @param x the new x coordinate
+     */
+    void setX(int entity, float x) {
+        this.x[entity] = x;
+        lastX[entity] = (int)x;
+        sweepX[entity] = 0;
+    }
+
+    /**
+     * Put an entity at a new y coordinate without it having travelled there.
+     * @param entity the entity
+     * @param y the new y coordinate
+     */
+    void setY(int entity, float y) {
+        this.y[entity] = y;
+        lastY[entity] = (int)y;
+        sweepY[entity] = 0;
+    }
+
+    /**
+     * Integrate every entity in the given range by one tick. Moving entities have drag applied
+     * and then either stop at the walls or bounce off them, carried entities are moved to their
+     * carriers, and finally any bouncing entity that came to rest is told via
+     * {@link Sprite#stopped()}. Carriers outside the range must already have been stepped.
+     * This uses a scratch array of the world's own, so to step disjoint ranges concurrently use
+     * {@link #step(int, int, float[])} instead.
+     * @param from the first entity ID, inclusive
+     * @param to the last entity ID, exclusive
+     */
+    public void step(int from, int to) {
+        step(from, to, dragScratch);
+    }
+
+    /**
+     * Integrate every entity in the given range by one tick, like {@link #step(int, int)}, with
+     * a scratch array for the drag model that belongs to the calling thread. Disjoint ranges may
+     * be stepped concurrently as long as the drag model is thread-safe and each thread passes
+     * its own scratch array.
+     * @param from the first entity ID, inclusive
+     * @param to the last entity ID, exclusive
+     * @param scratch at least two elements, for {@link DragModel#dragAll}
+     */
+    public void step(int from, int to, float[] scratch) {
+        for (int i = from; i < to; i++) {
+            moving[i] = (carrier[i] < 0) && ((xVel[i] != 0) || (yVel[i] != 0));
+            lastX[i] = (int)x[i];
+            lastY[i] = (int)y[i];
+        }
+
+        drag.dragAll(x, y, xVel, yVel, from, to, scratch);
+
+        // Each range records stopped entities in its own slice of the array
+        int stoppedCount = from;
+
+        for (int i = from; i < to; i++) {
+            if (!moving[i]) {
+                continue;
+            }
+
+            if (bounces[i]) {
+                if (bounce(i)) {
+                    stopped[stoppedCount++] = i;
+                }
+            } else {
+                clamp(i);
+            }
+
+            if ((xVel[i] != 0) || (yVel[i] != 0)) {
+                xHeading[i] = xVel[i];
+                yHeading[i] = yVel[i];
+            }
+        }
+
+        for (int i = from; i < to; i++) {
+            if (carrier[i] >= 0) {
+                x[i] = x[carrier[i]];
+                y[i] = y[carrier[i]];
+            }
+
+            // A bounce records its own unreflected displacement
+            if (!moving[i] || !bounces[i]) {
+                sweepX[i] = (int)x[i] - lastX[i];
+                sweepY[i] = (int)y[i] - lastY[i];
+            }
+        }
+
+        for (int i = from; i < stoppedCount; i++) {
+            sprites[stopped[i]].stopped();
+        }
+    }
+
+    /**
+     * Move an entity, stopping it at the edges of its bounds.
+     */
+    private void clamp(int i) {
+        x[i] = Math.min(Math.max(x[i] + xVel[i], minX[i]), maxX[i]);
+        y[i] = Math.min(Math.max(y[i] + yVel[i], minY[i]), maxY[i]);
+
+        if ((x[i] <= minX[i]) || (x[i] >= maxX[i])) {
+            xVel[i] = 0;
+        }
+
+        if ((y[i] <= minY[i]) || (y[i] >= maxY[i])) {
+            yVel[i] = 0;
+        }
+    }
+
+    /**
+     * Move an entity by whole pixels, reflecting it off the edges of its bounds.
+     * @return whether the entity has come to rest
+     */
+    private boolean bounce(int i) {
+        sweepX[i] = (int)xVel[i];
+        sweepY[i] = (int)yVel[i];
+
+        final int x = reflect(lastX[i] + sweepX[i], minX[i], maxX[i]);
+        final int y = reflect(lastY[i] + sweepY[i], minY[i], maxY[i]);
+
+        if (x != lastX[i] + sweepX[i]) {
+            xVel[i] = -xVel[i];
+        }
+
+        if (y != lastY[i] + sweepY[i]) {
+            yVel[i] = -yVel[i];
+        }
+
+        this.x[i] = x;
+        this.y[i] = y;
+
+        return (xVel[i] == 0) && (yVel[i] == 0);
+    }
+
+    private static int reflect(int position, int min, int max) {
+        if (position < min) {
+            return 2 * min - position;
+        } else if (position > max) {
+            return 2 * max - position;
+        } else {
+            return position;
+        }
+    }
+
+    private static float reflect(float position, int min, int max) {
+        if (position < min) {
+            return 2 * min - position;
+        } else if (position > max) {
+            return 2 * max - position;
+        } else {
+            return position;
+        }
+    }
+
+    /**
+     * Test whether two entities touched at any point during the last step. Each entity's path is
+     * followed piecewise between any bounces, so a fast entity can't pass through another
+     * between one step and the next, and each piece goes through the tiers of the narrowphase
+     * until one rules it out. Both entities must have been stepped together.
+     * @param a the first entity
+     * @param b the second entity
+     * @param pair the collision table for a's shape against b's shape
+     * @return {@link Shape#OVERLAP} if they touched, or otherwise the most expensive tier needed
+     *     to rule out a piece of the path
+     */
+    int sweptTest(int a, int b, Shape.Pair pair) {
+        int result = Shape.BOX_REJECT;
+        float from = 0f;
+
+        while (from < 1f) {
+            final float to = Math.min(nextBounce(a, from), nextBounce(b, from));
+            final float dx0 = pathX(b, from) - pathX(a, from);
+            final float dy0 = pathY(b, from) - pathY(a, from);
+            final float dx1 = pathX(b, to) - pathX(a, to);
+            final float dy1 = pathY(b, to) - pathY(a, to);
+            final int cull = pair.cull(dx0, dy0, dx1, dy1);
+
+            if (cull != Shape.OVERLAP) {
+                result = Math.max(result, cull);
+            } else if (pair.satTimeOfImpact(dx0, dy0, dx1, dy1) >= 0) {
+                return Shape.OVERLAP;
+            } else {
+                result = Shape.SAT_REJECT;
+            }
+
+            from = to;
+        }
+
+        return result;
+    }
+
+    /**
+     * Find the next time after the given one when an entity bounced during the last step.
+     */
+    private float nextBounce(int i, float after) {
+        float next = 1f;
+
+        if (bounces[i]) {
+            next = nextBounce(lastX[i], sweepX[i], minX[i], maxX[i], after, next);
+            next = nextBounce(lastY[i], sweepY[i], minY[i], maxY[i], after, next);
+        }
+
+        return next;
+    }
+
+    private static float nextBounce(int last, int sweep, int min, int max, float after, float next) {
+        final int end = last + sweep;
+        float t = 1f;
+
+        if (end < min) {
+            t = (float)(min - last) / sweep;
+        } else if (end > max) {
+            t = (float)(max - last) / sweep;
+        }
+
+        return (t > after) ? Math.min(t, next) : next;
+    }
+
+    private float pathX(int i, float t) {
+        if (t >= 1f) {
+            return (int)x[i];
+        }
+
+        final float x = lastX[i] + t * sweepX[i];
+
+        return bounces[i] ? reflect(x, minX[i], maxX[i]) : x;
+    }
+
+    private float pathY(int i, float t) {
+        if (t >= 1f) {
+            return (int)y[i];
+        }
+
+        final float y = lastY[i] + t * sweepY[i];
+
+        return bounces[i] ? reflect(y, minY[i], maxY[i]) : y;
+    }
+
+    /**
+     * Get the lowest x coordinate an entity passed through during the last step.
+     */
+    int getPathMinX(int i) {
+        return pathMin(lastX[i], sweepX[i], (int)x[i], bounces[i] ? minX[i] : Integer.MIN_VALUE);
+    }
+
+    /**
+     * Get the highest x coordinate an entity passed through during the last step.
+     */
+    int getPathMaxX(int i) {
+        return pathMax(lastX[i], sweepX[i], (int)x[i], bounces[i] ? maxX[i] : Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get the lowest y coordinate an entity passed through during the last step.
+     */
+    int getPathMinY(int i) {
+        return pathMin(lastY[i], sweepY[i], (int)y[i], bounces[i] ? minY[i] : Integer.MIN_VALUE);
+    }
+
+    /**
+     * Get the highest y coordinate an entity passed through during the last step.
+     */
+    int getPathMaxY(int i) {
+        return pathMax(lastY[i], sweepY[i], (int)y[i], bounces[i] ? maxY[i] : Integer.MAX_VALUE);
+    }
+
+    private static int pathMin(int last, int sweep, int end, int wall) {
+        // A path that crossed the wall turned around on it
+        return (last + sweep < wall) ? wall : Math.min(last, end);
+    }
+
+    private static int pathMax(int last, int sweep, int end, int wall) {
+        return (last + sweep > wall) ? wall : Math.max(last, end);
+    }
+
+    /**
+     * Count the entities in a range that moved on their own at their last step, as opposed to
+     * being carried or sitting still.
+     * @param from the first entity ID, inclusive
+     * @param to the last entity ID, exclusive
+     * @return the number of moving entities
+     */
+    public int countMoving(int from, int to) {
+        int moving = 0;
+
+        for (int i = from; i < to; i++) {
+            moving += this.moving[i] ? 1 : 0;
+        }
+
+        return moving;
+    }
+
+    /**
+     * Get the number of bytes {@link #save(ByteBuffer)} writes.
+     * @return the size of the saved state
+     */
+    public int getStateSize() {
+        return count * ENTITY_STATE_SIZE;
+    }
+
+    /**
+     * Write every entity's position, velocity, heading, carrier and last path to a buffer.
+     * @param buffer the buffer to write to
+     */
+    public void save(ByteBuffer buffer) {
+        for (int i = 0; i < count; i++) {
+            buffer.putFloat(x[i]);
+            buffer.putFloat(y[i]);
+            buffer.putFloat(xVel[i]);
+            buffer.putFloat(yVel[i]);
+            buffer.putFloat(xHeading[i]);
+            buffer.putFloat(yHeading[i]);
+            buffer.putInt(carrier[i]);
+            buffer.putInt(lastX[i]);
+            buffer.putInt(lastY[i]);
+            buffer.putInt(sweepX[i]);
+            buffer.putInt(sweepY[i]);
+        }
+    }
+
+    /**
+     * Read back the state written by {@link #save(ByteBuffer)}. The world must hold the same
+     * entities as when it was saved.
+     * @param buffer the buffer to read from
+     */
+    public void restore(ByteBuffer buffer) {
+        for (int i = 0; i < count; i++) {
+            x[i] = buffer.getFloat();
+            y[i] = buffer.getFloat();
+            xVel[i] = buffer.getFloat();
+            yVel[i] = buffer.getFloat();
+            xHeading[i] = buffer.getFloat();
+            yHeading[i] = buffer.getFloat();
+            carrier[i] = buffer.getInt();
+            lastX[i] = buffer.getInt();
+            lastY[i] = buffer.getInt();
+            sweepX[i] = buffer.getInt();
+            sweepY[i] = buffer.getInt();
+        }
+    }
+
+    private void grow(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        xVel = Arrays.copyOf(xVel, capacity);
+        yVel = Arrays.copyOf(yVel, capacity);
+        xHeading = Arrays.copyOf(xHeading, capacity);
+        yHeading = Arrays.copyOf(yHeading, capacity);
+        sprites = Arrays.copyOf(sprites, capacity);
+        minX = Arrays.copyOf(minX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+        bounces = Arrays.copyOf(bounces, capacity);
+        carrier = Arrays.copyOf(carrier, capacity);
+        moving = Arrays.copyOf(moving, capacity);
+        stopped = Arrays.copyOf(stopped, capacity);
+        lastX = Arrays.copyOf(lastX, capacity);
+        lastY = Arrays.copyOf(lastY, capacity);
+        sweepX = Arrays.copyOf(sweepX, capacity);
+        sweepY = Arrays.copyOf(sweepY, capacity);
+    }
+}
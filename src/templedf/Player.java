@@ -7,14 +7,14 @@ import java.awt.Rectangle;
 
 public class Player extends Sprite {
     public static final float LAUNCH_SPEED = 20f;
-    private final Color color;
+    private final SpriteImages images;
     private Ammo ammo = null;
-    private float lastXVel = 1f;
-    private float lastYVel = 0f;
 
     public Player(int x, int y, int size, Rectangle bounds, DragModel drag, Color color) {
         super(x, y, generatePoints(size), pruneBounds(bounds, size), drag);
-        this.color = color;
+        images = new SpriteImages(color);
+        // Work out every angle up front rather than in the middle of a round
+        face();
     }
 
     private static Point[] generatePoints(int size) {
@@ -33,11 +33,44 @@ public class Player extends Sprite {
     public void reset() {
         super.reset();
         ammo = null;
+        face();
+    }
+
+    /**
+     * Turn the player to face the way it last moved.
+     */
+    public void face() {
+        setAngle(Shape.angle(getXHeading(), getYHeading()));
     }
 
     public void load(Ammo ammo) {
+        final GameEvents.Load event = new GameEvents.Load();
+
         this.ammo = ammo;
         ammo.setShooter(this);
+        ammo.setCarrier(this);
+
+        if (event.shouldCommit()) {
+            event.player = id;
+            event.ammo = ammo.id;
+            event.commit();
+        }
+    }
+
+    /**
+     * Get the ammo this player is holding.
+     * @return the ammo, or null if the player isn't loaded
+     */
+    Ammo getAmmo() {
+        return ammo;
+    }
+
+    /**
+     * Set the ammo this player is holding without touching the ammo, for restoring saved state.
+     * @param ammo the ammo, or null
+     */
+    void setAmmo(Ammo ammo) {
+        this.ammo = ammo;
     }
 
     public boolean isLoaded() {
@@ -49,6 +82,8 @@ public class Player extends Sprite {
             return;
         }
 
+        final float lastXVel = getXHeading();
+        final float lastYVel = getYHeading();
         float xVel = 0;
         float yVel = 0;
 
@@ -63,7 +98,21 @@ public class Player extends Sprite {
             yVel = lastYVel / magnitude * (LAUNCH_SPEED + magnitude);
         }
 
+        // The ammo may not have caught up with us yet if the world hasn't stepped it
+        ammo.setCarrier(null);
+        ammo.moveTo(this);
         ammo.shoot(xVel, yVel);
+
+        final GameEvents.Shoot event = new GameEvents.Shoot();
+
+        if (event.shouldCommit()) {
+            event.player = id;
+            event.ammo = ammo.id;
+            event.xVelocity = xVel;
+            event.yVelocity = yVel;
+            event.commit();
+        }
+
         ammo = null;
     }
 
@@ -88,24 +137,21 @@ public class Player extends Sprite {
     @Override
     public void move() {
         super.move();
+        face();
 
-        if ((xVelocity != 0) || (yVelocity != 0)) {
-            lastXVel = xVelocity;
-            lastYVel = yVelocity;
+        // The world only moves our ammo for us if we share it
+        if ((ammo != null) && (ammo.world != world)) {
+            ammo.moveTo(this);
         }
     }
 
     @Override
     public void paint(Graphics g) {
-        int[] xPoints = new int[vertices.length];
-        int[] yPoints = new int[vertices.length];
-
-        for (int i = 0; i < vertices.length; i++) {
-            xPoints[i] = vertices[i].x + getX();
-            yPoints[i] = vertices[i].y + getY();
-        }
+        paint(g, getX(), getY());
+    }
 
-        g.setColor(color);
-        g.fillPolygon(xPoints, yPoints, vertices.length);
+    @Override
+    public void paint(Graphics g, int x, int y, int angle) {
+        images.draw(g, getShape(angle), x, y);
     }
 }
@@ -0,0 +1,160 @@
+package templedf;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Plays back a match recorded by {@link ReplayRecorder}, headless and as fast as the engine will
+ * tick, and checks that it ends with the recorded scores. Usage: {@code ReplayPlayer file}
+ */
+public class ReplayPlayer {
+    private final MappedByteBuffer buffer;
+    private final Engine engine;
+    private final int players;
+    private final int ticks;
+    private final InputFrame frame;
+
+    /**
+     * Open a replay and set up an engine in its starting state.
+     * @param path the replay file
+     * @throws IOException if the file can't be read, is cut short or isn't a replay of this engine
+     */
+    public ReplayPlayer(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+        }
+
+        if ((buffer.remaining() < ReplayRecorder.HEADER) || (buffer.getInt() != ReplayRecorder.MAGIC) ||
+                (buffer.getShort() != ReplayRecorder.VERSION)) {
+            throw new IOException("not a replay: " + path);
+        }
+
+        players = buffer.getShort();
+
+        final long seed = buffer.getLong();
+        final int ammoCount = buffer.getInt();
+
+        ticks = buffer.getInt();
+
+        final int angles = buffer.getInt();
+        final int ammoCapacity = buffer.getInt();
+        final int eventBytes = buffer.getInt();
+
+        // Sprites turned to a different set of angles would collide differently
+        if (angles != Shape.ANGLES) {
+            throw new IOException("replay was recorded with " + angles + " angles, not " + Shape.ANGLES + ": " + path);
+        }
+
+        if ((players <= 0) || (ammoCount < 0) || (ammoCount % 2 != 0) || (ammoCapacity < ammoCount) || (ticks < 0) ||
+                (eventBytes < 0)) {
+            throw new IOException("corrupt replay: " + path);
+        }
+
+        // Anything past the scores is padding left by a recorder that couldn't trim the file
+        final long length = ReplayRecorder.HEADER + ammoCount * 4L + (long)ticks * players + eventBytes +
+                players * 4L;
+
+        if (buffer.capacity() < length) {
+            throw new IOException("replay is cut short at " + buffer.capacity() + " of " + length + " bytes: " + path);
+        }
+
+        engine = new Engine(seed, ammoCount, new CollisionWorld(Engine.CELL_SIZE), ammoCapacity, players);
+        frame = new InputFrame(players);
+
+        for (int a = 0; a < ammoCount; a++) {
+            if ((buffer.getShort() != engine.getAmmo()[a].getX()) || (buffer.getShort() != engine.getAmmo()[a].getY())) {
+                throw new IOException("replay starts from a different world");
+            }
+        }
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Play every tick of the replay.
+     * @return whether the scores at the end match the recorded scores
+     * @throws IOException if an event is corrupt or didn't do what it did when it was recorded
+     */
+    public boolean play() throws IOException {
+        for (int t = 0; t < ticks; t++) {
+            final boolean events = (buffer.get(buffer.position()) & ReplayRecorder.EVENTS) != 0;
+
+            for (int p = 0; p < players; p++) {
+                frame.set(p, buffer.get());
+            }
+
+            if (events) {
+                try {
+                    playEvents(t);
+                } catch (BufferUnderflowException e) {
+                    throw new IOException("replay events run past the end of the file before tick " + t, e);
+                }
+            }
+
+            engine.tick(frame);
+        }
+
+        boolean matches = true;
+
+        for (int p = 0; p < players; p++) {
+            matches &= buffer.getInt() == engine.getScore(p);
+        }
+
+        return matches;
+    }
+
+    /**
+     * Apply the events recorded before a tick, in order.
+     */
+    private void playEvents(int tick) throws IOException {
+        final AmmoPool pool = engine.getAmmoPool();
+        final int count = buffer.getInt();
+
+        for (int e = 0; e < count; e++) {
+            final byte type = buffer.get();
+
+            if (type == ReplayRecorder.RESTART) {
+                engine.restart();
+            } else if (type == ReplayRecorder.SPAWN) {
+                if (pool.spawn(buffer.getShort(), buffer.getShort()) == null) {
+                    throw new IOException("replay spawned ammo into a full pool before tick " + tick);
+                }
+            } else if (type == ReplayRecorder.DESPAWN) {
+                final int slot = buffer.getShort();
+
+                if ((slot < 0) || (slot >= pool.getCapacity()) || !pool.despawn(pool.getAmmo()[slot])) {
+                    throw new IOException("replay despawned inactive ammo before tick " + tick);
+                }
+            } else {
+                throw new IOException("unknown replay event " + type + " before tick " + tick);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        final ReplayPlayer player = new ReplayPlayer(Paths.get(args[0]));
+        final long start = System.nanoTime();
+        final boolean matches = player.play();
+        final double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d ticks in %.3f s (%.0f ticks/s), scores %s%n", player.getTicks(), seconds,
+                player.getTicks() / seconds, matches ? "match" : "DO NOT MATCH");
+
+        if (!matches) {
+            System.exit(1);
+        }
+    }
+}
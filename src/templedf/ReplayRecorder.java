@@ -0,0 +1,251 @@
+package templedf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Records a match to a file so that {@link ReplayPlayer} can play it back. Since the engine is
+ * deterministic, a replay only needs the seed, the size of the world and every player's
+ * controls for every tick, one byte per player from {@link InputFrame#encode(Input, int)}.
+ * Anything else that changes the world between ticks is recorded as an event: restarting the
+ * round and spawning or despawning ammo, which must all go through the recorder. The starting
+ * ammo positions are recorded too so that playback can check it's starting from the same world,
+ * and the final scores are recorded at the end so that it can check it ended up in the same
+ * place. The broadphase isn't recorded, since the engine plays the same with any of them.
+ * <p>
+ * The file is written through a memory mapping, a chunk at a time, so recording a tick is just
+ * a couple of stores into memory. The layout is:
+ * <pre>
+ *   int    magic number
+ *   short  format version
+ *   short  number of players
+ *   long   seed
+ *   int    number of pieces of ammo at the start
+ *   int    number of ticks
+ *   int    number of angles a shape can turn to, {@link Shape#ANGLES}
+ *   int    ammo capacity
+ *   int    number of bytes of events
+ *   (short x, short y) for each piece of ammo
+ *   (byte controls for each player, then any events) for each tick
+ *   int score for each player
+ * </pre>
+ * The top bit of the first player's controls for a tick is set if anything happened between
+ * that tick and the one before. In that case the controls are followed by an int count of
+ * events and then the events, in the order they happened, each a byte type followed by its
+ * arguments: {@link #RESTART}, {@link #SPAWN} with a short x and y, or {@link #DESPAWN} with the
+ * short slot of the piece in the pool. Events after the last tick can't change anything
+ * recorded, so they're left out.
+ * <p>
+ * When it's closed, the file is cut down to its length. Windows won't truncate a file while
+ * part of it is mapped, and Java has no way to unmap a buffer, so there the file keeps the
+ * zeros up to the end of the last chunk, which {@link ReplayPlayer} ignores.
+ */
+public class ReplayRecorder implements Closeable {
+    static final int MAGIC = 0x53504852;
+    static final short VERSION = 3;
+    static final int HEADER = 36;
+    static final int TICKS_OFFSET = 20;
+    static final int ANGLES_OFFSET = 24;
+    static final int EVENT_BYTES_OFFSET = 32;
+    // Set in the first player's controls for a tick that has events before it
+    static final int EVENTS = 0x80;
+    static final byte RESTART = 0;
+    static final byte SPAWN = 1;
+    static final byte DESPAWN = 2;
+    private static final int CHUNK = 1 << 20;
+    private final Engine engine;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final InputFrame frame;
+    private final int players;
+    private MappedByteBuffer buffer;
+    // The file offset of the start of the buffer
+    private long base = 0L;
+    private int ticks = 0;
+    // The events since the last tick, waiting to be written before the next one
+    private byte[] events = new byte[16];
+    private int eventLength = 0;
+    private int eventCount = 0;
+    private int eventBytes = 0;
+
+    /**
+     * Start recording a match. The engine must not have ticked yet.
+     * @param path the file to record to, which is replaced if it exists
+     * @param engine the engine
+     * @throws IOException if the file can't be written
+     */
+    public ReplayRecorder(Path path, Engine engine) throws IOException {
+        if (engine.getTick() != 0) {
+            throw new IllegalStateException("the engine has already ticked");
+        }
+
+        this.engine = engine;
+        players = engine.getPlayers().length;
+        frame = new InputFrame(players);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0L, CHUNK);
+        header = buffer;
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short)players);
+        buffer.putLong(engine.getSeed());
+        buffer.putInt(engine.getAmmoPool().size());
+        buffer.putInt(0);
+        buffer.putInt(Shape.ANGLES);
+        buffer.putInt(engine.getAmmoPool().getCapacity());
+        buffer.putInt(0);
+
+        for (int a = 0; a < engine.getAmmoPool().size(); a++) {
+            ensure(4);
+            buffer.putShort((short)engine.getAmmo()[a].getX());
+            buffer.putShort((short)engine.getAmmo()[a].getY());
+        }
+    }
+
+    /**
+     * Record the controls for the next tick. The engine should tick with the returned controls
+     * rather than the given ones, so that what's played is exactly what's recorded even if
+     * reading the controls consumes them.
+     * @param input the controls
+     * @return the recorded controls
+     * @throws IOException if the file can't be extended
+     */
+    public Input record(Input input) throws IOException {
+        final int length = eventCount > 0 ? players + 4 + eventLength : players;
+
+        ensure(length);
+
+        for (int p = 0; p < players; p++) {
+            final byte controls = InputFrame.encode(input, p);
+
+            buffer.put((byte)((p == 0) && (eventCount > 0) ? controls | EVENTS : controls));
+            frame.set(p, controls);
+        }
+
+        if (eventCount > 0) {
+            buffer.putInt(eventCount);
+            buffer.put(events, 0, eventLength);
+            eventBytes += 4 + eventLength;
+            eventLength = 0;
+            eventCount = 0;
+        }
+
+        ticks += 1;
+
+        return frame;
+    }
+
+    /**
+     * Restart the engine for a new round, and record that it happened before the next tick.
+     */
+    public void restart() {
+        engine.restart();
+        addEvent(RESTART, 1);
+    }
+
+    /**
+     * Spawn a piece of ammo, and record that it happened before the next tick.
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the piece, or null if every piece is active
+     * @see AmmoPool#spawn(int, int)
+     */
+    public Ammo spawn(int x, int y) {
+        final Ammo a = engine.getAmmoPool().spawn(x, y);
+
+        if (a != null) {
+            addEvent(SPAWN, 5);
+            putShort(x);
+            putShort(y);
+        }
+
+        return a;
+    }
+
+    /**
+     * Despawn a piece of ammo, and record that it happened before the next tick.
+     * @param a the piece
+     * @return whether the piece was active
+     * @see AmmoPool#despawn(Ammo)
+     */
+    public boolean despawn(Ammo a) {
+        final AmmoPool pool = engine.getAmmoPool();
+        final int slot = a.id - pool.getBase();
+
+        if (!pool.despawn(a)) {
+            return false;
+        }
+
+        addEvent(DESPAWN, 3);
+        putShort(slot);
+
+        return true;
+    }
+
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Write the final scores and the tick count and trim the file to its length, if the
+     * platform allows truncating a mapped file.
+     * @throws IOException if the file can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        ensure(players * 4);
+
+        for (int p = 0; p < players; p++) {
+            buffer.putInt(engine.getScore(p));
+        }
+
+        header.putInt(TICKS_OFFSET, ticks);
+        header.putInt(EVENT_BYTES_OFFSET, eventBytes);
+        header.force();
+        buffer.force();
+
+        final long length = base + buffer.position();
+
+        try {
+            channel.truncate(length);
+        } catch (IOException e) {
+            // Everything's already written, and the rest of the file is just padding
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Start an event of the given type and length, including the type.
+     */
+    private void addEvent(byte type, int length) {
+        if (eventLength + length > events.length) {
+            events = Arrays.copyOf(events, Math.max(events.length * 2, eventLength + length));
+        }
+
+        events[eventLength++] = type;
+        eventCount += 1;
+    }
+
+    private void putShort(int value) {
+        events[eventLength++] = (byte)(value >> 8);
+        events[eventLength++] = (byte)value;
+    }
+
+    /**
+     * Make sure there's room for the given number of bytes, mapping the next chunk if needed.
+     */
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            buffer.force();
+            base += buffer.position();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, base, CHUNK);
+        }
+    }
+}
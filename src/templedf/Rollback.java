@@ -0,0 +1,150 @@
+package templedf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A rolling history of the engine's state and inputs for the last few ticks, for hiding network
+ * latency by predicting the peer's input and correcting it later, or for asking what would have
+ * happened with different input. Every tick goes through {@link #tick(Input)}, which saves the
+ * world before ticking and records the controls it ticked with. {@link #setInput(long, int, Input)}
+ * then changes a recorded input, and {@link #rollback(long)} restores an earlier tick and
+ * re-simulates forward to the present with the recorded inputs, corrections and all.
+ * <p>
+ * The states are saved with {@link Engine#save(java.nio.ByteBuffer)} into one buffer that's
+ * allocated up front and used as a ring, so saving and restoring never allocate. Ticks are
+ * counted by the history, one per call to {@link #tick(Input)}. A round that's over is
+ * restarted at the start of the next tick, so whether a round ends, and when the next one
+ * starts, is worked out from the simulated world every time, and a corrected input that adds or
+ * removes a hit changes the rounds that follow it.
+ */
+public class Rollback {
+    private final Engine engine;
+    private final int capacity;
+    private final int players;
+    private final int stateSize;
+    // The saved state before each tick, indexed by tick modulo the capacity
+    private final ByteBuffer states;
+    // The controls each player ticked with, indexed by tick modulo the capacity and then player
+    private final byte[] inputs;
+    private final InputFrame frame;
+    // The next tick to simulate
+    private long tick = 0L;
+
+    /**
+     * Start keeping a history of an engine.
+     * @param engine the engine
+     * @param capacity the most ticks of history to keep
+     */
+    public Rollback(Engine engine, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+
+        this.engine = engine;
+        this.capacity = capacity;
+        players = engine.getPlayers().length;
+        stateSize = engine.getStateSize();
+        states = ByteBuffer.allocate(stateSize * capacity);
+        inputs = new byte[capacity * players];
+        frame = new InputFrame(players);
+    }
+
+    /**
+     * Get the next tick to simulate.
+     * @return the tick
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Get the earliest tick that can still be rolled back to.
+     * @return the tick
+     */
+    public long getOldestTick() {
+        return Math.max(0L, tick - capacity);
+    }
+
+    /**
+     * Save the world and tick it with the given controls, first restarting the round if it's
+     * over.
+     * @param input the controls for this tick
+     */
+    public void tick(Input input) {
+        final int slot = (int)(tick % capacity);
+
+        for (int p = 0; p < players; p++) {
+            inputs[slot * players + p] = InputFrame.encode(input, p);
+        }
+
+        simulate(tick);
+        tick += 1;
+    }
+
+    /**
+     * Change a player's recorded controls for a tick in the history. The engine isn't touched
+     * until the next {@link #rollback(long)}.
+     * @param tick the tick
+     * @param player the player index
+     * @param input the corrected controls
+     */
+    public void setInput(long tick, int player, Input input) {
+        checkTick(tick, this.tick - 1);
+        inputs[(int)(tick % capacity) * players + player] = InputFrame.encode(input, player);
+    }
+
+    /**
+     * Put the world back as it was before the given tick and tick it forward to the present
+     * with the recorded inputs.
+     * @param tick the tick to roll back to
+     */
+    public void rollback(long tick) {
+        checkTick(tick, this.tick);
+
+        if (tick == this.tick) {
+            return;
+        }
+
+        restore(tick);
+
+        for (long t = tick; t < this.tick; t++) {
+            simulate(t);
+        }
+    }
+
+    /**
+     * Put the world back as it was before the given tick, without ticking forward.
+     */
+    private void restore(long tick) {
+        states.position((int)(tick % capacity) * stateSize);
+        engine.restore(states);
+    }
+
+    /**
+     * Save the world and tick it with the recorded controls for a tick, restarting the round
+     * first if it's over. The state is saved before the restart, so restoring it restarts again.
+     */
+    private void simulate(long tick) {
+        final int slot = (int)(tick % capacity);
+
+        states.position(slot * stateSize);
+        engine.save(states);
+
+        if (engine.isRoundOver()) {
+            engine.restart();
+        }
+
+        for (int p = 0; p < players; p++) {
+            frame.set(p, inputs[slot * players + p]);
+        }
+
+        engine.tick(frame);
+    }
+
+    private void checkTick(long tick, long last) {
+        if ((tick < getOldestTick()) || (tick > last)) {
+            throw new IllegalArgumentException("tick " + tick + " isn't in the history from " +
+                    getOldestTick() + " to " + last);
+        }
+    }
+}
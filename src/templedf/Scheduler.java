@@ -0,0 +1,201 @@
+package templedf;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fixed-timestep game loop. Wall-clock time accumulates, and the simulation ticks once for
+ * every full timestep in the accumulator, so the tick rate doesn't drift with how long each tick
+ * takes. If the simulation falls too far behind, it catches up by at most
+ * {@link #MAX_CATCH_UP} ticks and drops the rest of the backlog. Frames are rendered on their
+ * own schedule, independent of the tick rate, along with an interpolation alpha that says how
+ * far the clock is between the last tick and the next one. A scheduler can also be created with
+ * no renderer, for when frames are rendered actively on a thread of their own.
+ * <p>
+ * The simulation can pause itself for a fixed time, such as showing the score between rounds.
+ * While paused, frames are still rendered but the simulation doesn't tick.
+ */
+public class Scheduler {
+    public interface Simulation {
+        void tick();
+    }
+
+    public interface Renderer {
+        void render(float alpha);
+    }
+
+    /**
+     * The most ticks to run back to back before dropping the backlog.
+     */
+    public static final int MAX_CATCH_UP = 5;
+    private final Simulation simulation;
+    private final Renderer renderer;
+    private final long tickNanos;
+    private final long frameNanos;
+    private volatile boolean running = false;
+    // When the clock last passed a tick boundary, or 0 if there hasn't been a tick yet, so that
+    // the alpha can be worked out at any time
+    private volatile long tickStart = 0L;
+    private long pauseUntil = 0L;
+    private volatile boolean paused = false;
+    private Runnable onResume = null;
+    private volatile long droppedTicks = 0L;
+
+    /**
+     * Create a scheduler.
+     * @param simulation the simulation to tick
+     * @param renderer the renderer to call for each frame
+     * @param tickRate the simulation ticks per second
+     * @param frameRate the frames per second
+     */
+    public Scheduler(Simulation simulation, Renderer renderer, int tickRate, int frameRate) {
+        if ((tickRate <= 0) || (frameRate <= 0)) {
+            throw new IllegalArgumentException("rates must be positive: " + tickRate + ", " + frameRate);
+        }
+
+        this.simulation = simulation;
+        this.renderer = renderer;
+        tickNanos = TimeUnit.SECONDS.toNanos(1) / tickRate;
+        frameNanos = TimeUnit.SECONDS.toNanos(1) / frameRate;
+    }
+
+    /**
+     * Create a scheduler that only ticks the simulation.
+     * @param simulation the simulation to tick
+     * @param tickRate the simulation ticks per second
+     */
+    public Scheduler(Simulation simulation, int tickRate) {
+        if (tickRate <= 0) {
+            throw new IllegalArgumentException("tick rate must be positive: " + tickRate);
+        }
+
+        this.simulation = simulation;
+        this.renderer = null;
+        tickNanos = TimeUnit.SECONDS.toNanos(1) / tickRate;
+        frameNanos = 0L;
+    }
+
+    /**
+     * Start the loop on a new thread.
+     * @return the thread running the loop
+     */
+    public Thread start() {
+        running = true;
+
+        Thread thread = Executors.defaultThreadFactory().newThread(this::run);
+
+        thread.start();
+
+        return thread;
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Get how far the clock is between the last tick and the next one, from 0 to 1. This may be
+     * called from any thread, such as a render loop of its own. While paused, it's 1, since the
+     * last tick is all there is to show.
+     * @return the interpolation alpha
+     */
+    public float getAlpha() {
+        return alpha(System.nanoTime());
+    }
+
+    private float alpha(long now) {
+        final long start = tickStart;
+
+        if (paused) {
+            return 1f;
+        } else if (start == 0L) {
+            return 0f;
+        }
+
+        return Math.min(1f, (float)(now - start) / tickNanos);
+    }
+
+    /**
+     * Get the number of ticks dropped because the simulation fell too far behind.
+     * @return the dropped tick count
+     */
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    /**
+     * Stop ticking the simulation for a while. This must be called from the simulation's thread,
+     * typically from within a tick.
+     * @param millis how long to pause for
+     * @param onResume called on the simulation's thread when the pause is over, just before
+     *                 ticking resumes
+     */
+    public void pause(long millis, Runnable onResume) {
+        this.paused = true;
+        this.pauseUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        this.onResume = onResume;
+    }
+
+    private void run() {
+        long last = System.nanoTime();
+        long nextFrame = last;
+        long accumulator = 0L;
+
+        while (running && !Thread.currentThread().isInterrupted()) {
+            final long now = System.nanoTime();
+
+            accumulator += now - last;
+            last = now;
+
+            if (paused && (now - pauseUntil >= 0)) {
+                paused = false;
+                // Time spent paused doesn't count toward the simulation
+                accumulator = 0L;
+
+                if (onResume != null) {
+                    onResume.run();
+                    onResume = null;
+                }
+            }
+
+            if (paused) {
+                accumulator = 0L;
+            } else {
+                int ticks = 0;
+
+                while ((accumulator >= tickNanos) && (ticks < MAX_CATCH_UP) && !paused) {
+                    simulation.tick();
+                    accumulator -= tickNanos;
+                    ticks += 1;
+                }
+
+                if (paused) {
+                    accumulator = 0L;
+                } else if (accumulator >= tickNanos) {
+                    droppedTicks += accumulator / tickNanos;
+                    accumulator %= tickNanos;
+                }
+
+                tickStart = now - accumulator;
+            }
+
+            if ((renderer != null) && (now - nextFrame >= 0)) {
+                renderer.render(alpha(now));
+                nextFrame += frameNanos;
+
+                // Don't try to render a burst of frames to catch up
+                if (now - nextFrame >= 0) {
+                    nextFrame = now + frameNanos;
+                }
+            }
+
+            final long nextTick = paused ? pauseUntil : now + tickNanos - accumulator;
+            final long wait = (renderer == null ? nextTick : Math.min(nextTick, nextFrame)) - System.nanoTime();
+
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package templedf;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The immutable geometry of a sprite: its vertices relative to its center, its bounding box and
+ * bounding circle, the unit normals of its sides, and the projection of its vertices onto each
+ * of those normals. Shapes are interned, so every sprite built from the same vertices shares one
+ * instance, and the collision tables for each pair of shapes are computed once and then reused
+ * by every collision test between them.
+ * <p>
+ * A collision test runs in tiers, from cheapest to most expensive: the bounding boxes, then the
+ * bounding circles, and then SAT for the pairs that neither can rule out. The tests return which
+ * tier rejected the pair, or {@link #OVERLAP}, so callers can count how far pairs get.
+ * <p>
+ * A shape can be turned to any of {@link #ANGLES} evenly spaced orientations. Each orientation
+ * is a shape in its own right, with its vertices rounded to whole pixels and interned like any
+ * other, so it has its own collision tables and cached images. The orientations of a shape are
+ * all worked out together the first time it's rotated and then shared by every sprite with
+ * that shape, so turning a sprite is a table lookup.
+ */
+public final class Shape {
+    /**
+     * The shapes overlap.
+     */
+    static final int OVERLAP = 0;
+    /**
+     * The bounding boxes don't overlap.
+     */
+    static final int BOX_REJECT = 1;
+    /**
+     * The bounding boxes overlap but the bounding circles don't.
+     */
+    static final int CIRCLE_REJECT = 2;
+    /**
+     * The bounding boxes and circles overlap but SAT found a separating axis.
+     */
+    static final int SAT_REJECT = 3;
+    /**
+     * The number of orientations a shape can be turned to, set by the {@code spheroids.angles}
+     * system property. Rotation changes the outcome of collisions, so every engine that has to
+     * stay in sync, such as the two ends of a netplay session or a replay and its recording,
+     * must use the same value. Replays record it and {@link Netplay} packets carry it, and both
+     * refuse to go on with a different value.
+     */
+    public static final int ANGLES = angles();
+    private static final Map<Key, Shape> SHAPES = new HashMap<>();
+    private static int nextId = 0;
+    // Axes whose cross product is smaller than this are considered parallel
+    private static final float PARALLEL = 1e-6f;
+    // How much the bounding circles are padded so that rounding never rejects touching shapes
+    private static final float CIRCLE_SLACK = 1e-3f;
+    final int id;
+    final Point[] vertices;
+    final float[] axisX;
+    final float[] axisY;
+    final float[] projectionMin;
+    final float[] projectionMax;
+    // The bounding box of the vertices, relative to the center
+    final int minX;
+    final int minY;
+    final int maxX;
+    final int maxY;
+    // The distance from the center to the farthest vertex
+    final float radius;
+    // The SAT tables for this shape against other shapes, indexed by the other shape's ID
+    private volatile Pair[] pairs = new Pair[0];
+    // This shape turned to each angle, or null until it's first rotated
+    private volatile Shape[] rotations = null;
+
+    private Shape(int id, Point[] vertices) {
+        this.id = id;
+        this.vertices = new Point[vertices.length];
+
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        long radiusSquared = 0L;
+
+        for (int i = 0; i < vertices.length; i++) {
+            this.vertices[i] = new Point(vertices[i]);
+            minX = Math.min(minX, vertices[i].x);
+            minY = Math.min(minY, vertices[i].y);
+            maxX = Math.max(maxX, vertices[i].x);
+            maxY = Math.max(maxY, vertices[i].y);
+            radiusSquared = Math.max(radiusSquared,
+                    (long)vertices[i].x * vertices[i].x + (long)vertices[i].y * vertices[i].y);
+        }
+
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        radius = (float)Math.sqrt(radiusSquared);
+
+        float[] axisX = new float[vertices.length];
+        float[] axisY = new float[vertices.length];
+        int axes = 0;
+
+        for (int i = 0; i < vertices.length; i++) {
+            final Point v1 = vertices[i];
+            final Point v2 = vertices[(i + 1) % vertices.length];
+            // The normal to the side is (y1-y2, x2-x1), the same axis as a slope of (x2-x1)/(y1-y2)
+            final float x = v1.y - v2.y;
+            final float y = v2.x - v1.x;
+            final float magnitude = (float)Math.sqrt(x * x + y * y);
+
+            if ((magnitude > 0) && !isParallel(axisX, axisY, axes, x / magnitude, y / magnitude)) {
+                axisX[axes] = x / magnitude;
+                axisY[axes] = y / magnitude;
+                axes += 1;
+            }
+        }
+
+        this.axisX = Arrays.copyOf(axisX, axes);
+        this.axisY = Arrays.copyOf(axisY, axes);
+        projectionMin = new float[axes];
+        projectionMax = new float[axes];
+
+        for (int i = 0; i < axes; i++) {
+            projectionMin[i] = project(this.vertices, this.axisX[i], this.axisY[i], true);
+            projectionMax[i] = project(this.vertices, this.axisX[i], this.axisY[i], false);
+        }
+    }
+
+    private static int angles() {
+        final int angles = Integer.getInteger("spheroids.angles", 256);
+
+        if (angles < 1) {
+            throw new IllegalArgumentException("spheroids.angles must be positive: " + angles);
+        }
+
+        return angles;
+    }
+
+    /**
+     * Get the shared shape for the given vertices, creating it if needed.
+     * @param vertices the vertices relative to the center of the shape, in order around its edge
+     * @return the shape
+     */
+    public static Shape of(Point[] vertices) {
+        final Key key = new Key(vertices);
+
+        synchronized (SHAPES) {
+            Shape shape = SHAPES.get(key);
+
+            if (shape == null) {
+                shape = new Shape(nextId++, vertices);
+                SHAPES.put(key, shape);
+            }
+
+            return shape;
+        }
+    }
+
+    public int getAxisCount() {
+        return axisX.length;
+    }
+
+    /**
+     * Get the radius of the smallest circle around the center that contains the shape.
+     * @return the bounding radius
+     */
+    public float getRadius() {
+        return radius;
+    }
+
+    /**
+     * Get the SAT table for this shape against another shape, computing it on first use.
+     * @param other the other shape
+     * @return the SAT table with this shape as the first shape of the pair
+     */
+    Pair pair(Shape other) {
+        Pair[] pairs = this.pairs;
+
+        if ((other.id < pairs.length) && (pairs[other.id] != null)) {
+            return pairs[other.id];
+        }
+
+        synchronized (this) {
+            pairs = this.pairs;
+
+            if ((other.id >= pairs.length) || (pairs[other.id] == null)) {
+                pairs = Arrays.copyOf(pairs, Math.max(pairs.length, other.id + 1));
+                pairs[other.id] = new Pair(this, other);
+                this.pairs = pairs;
+            }
+
+            return pairs[other.id];
+        }
+    }
+
+    /**
+     * Get this shape turned clockwise on screen by the given number of steps of a full turn
+     * divided by {@link #ANGLES}. Angle 0 is this shape.
+     * @param angle the angle, which is taken modulo {@link #ANGLES}
+     * @return the rotated shape
+     */
+    Shape rotate(int angle) {
+        Shape[] rotations = this.rotations;
+
+        if (rotations == null) {
+            synchronized (this) {
+                rotations = this.rotations;
+
+                if (rotations == null) {
+                    rotations = rotations();
+                    this.rotations = rotations;
+                }
+            }
+        }
+
+        return rotations[Math.floorMod(angle, ANGLES)];
+    }
+
+    /**
+     * Get the angle closest to a direction.
+     * @param x the x component of the direction
+     * @param y the y component of the direction, which points down the screen
+     * @return the angle from 0 to {@link #ANGLES} - 1, where 0 points along the x axis
+     */
+    static int angle(float x, float y) {
+        // StrictMath so that every machine in a netplay session rounds to the same angle
+        final double turns = StrictMath.atan2(y, x) / (2 * Math.PI);
+
+        return Math.floorMod((int)StrictMath.round(turns * ANGLES), ANGLES);
+    }
+
+    private Shape[] rotations() {
+        final Shape[] rotations = new Shape[ANGLES];
+        final Point[] rotated = new Point[vertices.length];
+
+        rotations[0] = this;
+
+        for (int a = 1; a < ANGLES; a++) {
+            final double theta = 2 * Math.PI * a / ANGLES;
+            final double cos = StrictMath.cos(theta);
+            final double sin = StrictMath.sin(theta);
+
+            for (int i = 0; i < vertices.length; i++) {
+                rotated[i] = new Point((int)StrictMath.round(vertices[i].x * cos - vertices[i].y * sin),
+                        (int)StrictMath.round(vertices[i].x * sin + vertices[i].y * cos));
+            }
+
+            rotations[a] = of(rotated);
+        }
+
+        return rotations;
+    }
+
+    private static boolean isParallel(float[] axisX, float[] axisY, int axes, float x, float y) {
+        for (int i = 0; i < axes; i++) {
+            if (Math.abs(axisX[i] * y - axisY[i] * x) < PARALLEL) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static float project(Point[] vertices, float axisX, float axisY, boolean min) {
+        float result = min ? Float.MAX_VALUE : -Float.MAX_VALUE;
+
+        for (Point vertex : vertices) {
+            final float projection = vertex.x * axisX + vertex.y * axisY;
+
+            result = min ? Math.min(result, projection) : Math.max(result, projection);
+        }
+
+        return result;
+    }
+
+    /**
+     * The collision table for a pair of shapes, a and b. It holds the range of the distance
+     * between the shapes' centers over which their bounding boxes overlap, the distance within
+     * which their bounding circles overlap, and the distinct SAT axes of both shapes, with the
+     * range of the distance between the centers, projected onto each axis, over which the
+     * shapes' projections overlap. With the precomputed ranges, a SAT test is one dot product
+     * and two comparisons per axis, and the box and circle tests are cheaper still.
+     */
+    static final class Pair {
+        final int length;
+        final float[] axisX;
+        final float[] axisY;
+        final float[] min;
+        final float[] max;
+        // The bounding boxes overlap when the distance between the centers is in this range
+        final float boxMinX;
+        final float boxMinY;
+        final float boxMaxX;
+        final float boxMaxY;
+        // The bounding circles overlap when the distance between the centers is at most this
+        final float reach;
+        final float reachSquared;
+
+        private Pair(Shape a, Shape b) {
+            boxMinX = a.minX - b.maxX;
+            boxMinY = a.minY - b.maxY;
+            boxMaxX = a.maxX - b.minX;
+            boxMaxY = a.maxY - b.minY;
+            reach = (a.radius + b.radius) * (1f + CIRCLE_SLACK);
+            reachSquared = reach * reach;
+
+            float[] axisX = Arrays.copyOf(a.axisX, a.axisX.length + b.axisX.length);
+            float[] axisY = Arrays.copyOf(a.axisY, a.axisY.length + b.axisY.length);
+            int length = a.axisX.length;
+
+            for (int i = 0; i < b.axisX.length; i++) {
+                if (!isParallel(axisX, axisY, length, b.axisX[i], b.axisY[i])) {
+                    axisX[length] = b.axisX[i];
+                    axisY[length] = b.axisY[i];
+                    length += 1;
+                }
+            }
+
+            this.length = length;
+            this.axisX = Arrays.copyOf(axisX, length);
+            this.axisY = Arrays.copyOf(axisY, length);
+            min = new float[length];
+            max = new float[length];
+
+            for (int i = 0; i < length; i++) {
+                // b's projection is offset by the distance between the centers, so the shapes
+                // overlap on this axis when that distance is between these two values
+                min[i] = project(a.vertices, this.axisX[i], this.axisY[i], true) -
+                        project(b.vertices, this.axisX[i], this.axisY[i], false);
+                max[i] = project(a.vertices, this.axisX[i], this.axisY[i], false) -
+                        project(b.vertices, this.axisX[i], this.axisY[i], true);
+            }
+        }
+
+        /**
+         * Test whether the shapes overlap.
+         * @param dx the x distance from the center of a to the center of b
+         * @param dy the y distance from the center of a to the center of b
+         * @return whether the shapes overlap
+         */
+        boolean overlaps(float dx, float dy) {
+            return test(dx, dy) == OVERLAP;
+        }
+
+        /**
+         * Test whether the shapes overlap, one tier at a time.
+         * @param dx the x distance from the center of a to the center of b
+         * @param dy the y distance from the center of a to the center of b
+         * @return {@link #OVERLAP}, or the tier that rejected the pair
+         */
+        int test(float dx, float dy) {
+            if ((dx < boxMinX) || (dx > boxMaxX) || (dy < boxMinY) || (dy > boxMaxY)) {
+                return BOX_REJECT;
+            }
+
+            // Keep the multiply and add separate so the rounding matches the vector narrowphase
+            if (dx * dx + dy * dy > reachSquared) {
+                return CIRCLE_REJECT;
+            }
+
+            return satOverlaps(dx, dy) ? OVERLAP : SAT_REJECT;
+        }
+
+        /**
+         * Test whether the shapes overlap with SAT alone.
+         */
+        boolean satOverlaps(float dx, float dy) {
+            for (int i = 0; i < length; i++) {
+                final float dist = dx * axisX[i] + dy * axisY[i];
+
+                if ((dist < min[i]) || (dist > max[i])) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Find when the shapes first overlap as b moves in a straight line relative to a. On
+         * each axis the distance between the centers is inside the overlapping range for an
+         * interval of time, and the shapes overlap where all of those intervals intersect.
+         * @param dx0 the x distance from the center of a to the center of b at the start
+         * @param dy0 the y distance from the center of a to the center of b at the start
+         * @param dx1 the x distance from the center of a to the center of b at the end
+         * @param dy1 the y distance from the center of a to the center of b at the end
+         * @return the fraction of the way from the start to the end, or -1 if they never overlap
+         */
+        float timeOfImpact(float dx0, float dy0, float dx1, float dy1) {
+            return (cull(dx0, dy0, dx1, dy1) == OVERLAP) ? satTimeOfImpact(dx0, dy0, dx1, dy1) : -1f;
+        }
+
+        /**
+         * Test whether the bounding boxes or circles rule out the shapes overlapping as b moves
+         * in a straight line relative to a.
+         * @return {@link #BOX_REJECT} or {@link #CIRCLE_REJECT} if they do, or {@link #OVERLAP}
+         *     if SAT has to decide
+         */
+        int cull(float dx0, float dy0, float dx1, float dy1) {
+            if ((Math.max(dx0, dx1) < boxMinX) || (Math.min(dx0, dx1) > boxMaxX) ||
+                    (Math.max(dy0, dy1) < boxMinY) || (Math.min(dy0, dy1) > boxMaxY)) {
+                return BOX_REJECT;
+            }
+
+            // Find the closest the centers came, at the point on the path nearest to a's center
+            final float x = dx1 - dx0;
+            final float y = dy1 - dy0;
+            final float length = x * x + y * y;
+            final float t = (length > 0) ? Math.max(0f, Math.min(1f, -(dx0 * x + dy0 * y) / length)) : 0f;
+            final float cx = dx0 + t * x;
+            final float cy = dy0 + t * y;
+
+            return (cx * cx + cy * cy > reachSquared) ? CIRCLE_REJECT : OVERLAP;
+        }
+
+        /**
+         * Find when the shapes first overlap with SAT alone.
+         */
+        float satTimeOfImpact(float dx0, float dy0, float dx1, float dy1) {
+            float enter = 0f;
+            float exit = 1f;
+
+            for (int i = 0; i < length; i++) {
+                final float start = dx0 * axisX[i] + dy0 * axisY[i];
+                final float delta = dx1 * axisX[i] + dy1 * axisY[i] - start;
+
+                if (delta == 0) {
+                    if ((start < min[i]) || (start > max[i])) {
+                        return -1f;
+                    }
+                } else {
+                    final float a = (min[i] - start) / delta;
+                    final float b = (max[i] - start) / delta;
+
+                    enter = Math.max(enter, Math.min(a, b));
+                    exit = Math.min(exit, Math.max(a, b));
+
+                    if (enter > exit) {
+                        return -1f;
+                    }
+                }
+            }
+
+            return enter;
+        }
+    }
+
+    private static final class Key {
+        private final int[] coordinates;
+
+        private Key(Point[] vertices) {
+            coordinates = new int[vertices.length * 2];
+
+            for (int i = 0; i < vertices.length; i++) {
+                coordinates[i * 2] = vertices[i].x;
+                coordinates[i * 2 + 1] = vertices[i].y;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return (o instanceof Key) && Arrays.equals(coordinates, ((Key) o).coordinates);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(coordinates);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package templedf;
+
+/**
+ * A copy of everything needed to draw a frame of the game, taken between ticks. The simulation
+ * fills one in and publishes it through a {@link SnapshotExchange}, and the renderer reads only
+ * from snapshots, so a frame never shows a half-updated world. The sprites themselves are only
+ * referenced for what never changes about them, such as their unrotated shapes and colors.
+ * <p>
+ * Each sprite's position is recorded both at the end of the tick and at its start, so that a
+ * renderer can draw the sprites partway through the tick with {@link #lerp(int, int, float)},
+ * using the interpolation alpha from {@link Scheduler}.
+ */
+public final class Snapshot {
+    final Player[] players;
+    // The active ammo, which is the first ammoCount entries
+    final Ammo[] ammo;
+    final int[] playerX;
+    final int[] playerY;
+    final int[] playerAngle;
+    final int[] ammoX;
+    final int[] ammoY;
+    // Where each sprite was at the start of the tick
+    final int[] lastPlayerX;
+    final int[] lastPlayerY;
+    final int[] lastAmmoX;
+    final int[] lastAmmoY;
+    final int[] score;
+    int ammoCount;
+    long tick;
+    boolean roundOver;
+    // Whether the score overlay is showing
+    boolean showScore;
+    // Increases with every publish, so readers can tell whether a snapshot is newer
+    long sequence = 0L;
+
+    public Snapshot(Engine engine) {
+        players = engine.getPlayers();
+        ammo = new Ammo[engine.getAmmo().length];
+        playerX = new int[players.length];
+        playerY = new int[players.length];
+        playerAngle = new int[players.length];
+        ammoX = new int[ammo.length];
+        ammoY = new int[ammo.length];
+        lastPlayerX = new int[players.length];
+        lastPlayerY = new int[players.length];
+        lastAmmoX = new int[ammo.length];
+        lastAmmoY = new int[ammo.length];
+        score = new int[players.length];
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public boolean isRoundOver() {
+        return roundOver;
+    }
+
+    public boolean isShowingScore() {
+        return showScore;
+    }
+
+    public int getScore(int player) {
+        return score[player];
+    }
+
+    /**
+     * Interpolate a coordinate between the start and the end of the tick.
+     * @param last the coordinate at the start of the tick
+     * @param current the coordinate at the end of the tick
+     * @param alpha how far through the tick, from 0 to 1
+     * @return the interpolated coordinate
+     */
+    static int lerp(int last, int current, float alpha) {
+        return last + Math.round((current - last) * alpha);
+    }
+}
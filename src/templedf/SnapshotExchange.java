@@ -0,0 +1,59 @@
+package templedf;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands snapshots from the simulation thread to the render thread without locks. There are three
+ * snapshots: the writer fills the back one, the reader draws from the front one, and the third
+ * is the most recently published. Publishing swaps the back snapshot with the published one in a
+ * single atomic exchange, and reading swaps the front snapshot with the published one if it's
+ * newer. Neither side ever waits for the other, and since each side only touches the snapshot it
+ * holds, a snapshot is never written while it's being read. Nothing is allocated after
+ * construction.
+ */
+public final class SnapshotExchange {
+    private final AtomicReference<Snapshot> published;
+    // Only touched by the writer
+    private Snapshot back;
+    private long sequence = 0L;
+    // Only touched by the reader
+    private Snapshot front;
+
+    public SnapshotExchange(Engine engine) {
+        back = new Snapshot(engine);
+        published = new AtomicReference<>(new Snapshot(engine));
+        front = new Snapshot(engine);
+    }
+
+    /**
+     * Get the snapshot for the writer to fill in. Only the writer's thread may call this.
+     * @return the back snapshot
+     */
+    public Snapshot back() {
+        return back;
+    }
+
+    /**
+     * Publish the back snapshot. Only the writer's thread may call this, and it must not touch
+     * the old back snapshot afterwards.
+     */
+    public void publish() {
+        sequence += 1;
+        back.sequence = sequence;
+        back = published.getAndSet(back);
+    }
+
+    /**
+     * Get the most recently published snapshot. Only the reader's thread may call this, and the
+     * snapshot stays valid until its next call.
+     * @return the latest snapshot, which is empty if nothing has been published yet
+     */
+    public Snapshot latest() {
+        // The published snapshot can only get newer between these two steps
+        if (published.get().sequence > front.sequence) {
+            front = published.getAndSet(front);
+        }
+
+        return front;
+    }
+}
@@ -2,181 +2,336 @@ package templedf;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 import java.awt.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.awt.image.BufferStrategy;
+import java.util.Arrays;
 import java.util.Random;
-import java.util.concurrent.Executors;
-
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The game window. By default the game is drawn passively by Swing, with the scheduler having
+ * it paint whatever changed since the last frame. Run with {@code active [fps]} to draw it actively instead, on a
+ * canvas with its own render loop; an fps of 0 renders as fast as possible. Run with
+ * {@code -Dspheroids.metrics=true} to publish {@link TickMetrics} over JMX.
+ */
 public class Spheroids {
     public static void main(String[] args) throws Exception {
         JFrame frame = new JFrame();
-        frame.add(new GamePanel());
-        frame.pack();
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        frame.setVisible(true);
+
+        if ((args.length > 0) && args[0].equals("active")) {
+            final int frameRate = args.length > 1 ? Integer.parseInt(args[1]) : GameCanvas.FRAME_RATE;
+            final GameCanvas canvas = new GameCanvas(frameRate);
+
+            frame.add(canvas);
+            frame.pack();
+            frame.setVisible(true);
+            // The canvas needs to be on screen before it can have a buffer strategy
+            canvas.start();
+        } else {
+            frame.add(new GamePanel());
+            frame.pack();
+            frame.setVisible(true);
+        }
     }
 
-    private static class GamePanel extends JPanel implements DragModel  {
-        private static final int PLAYER_SIZE = 25;
-        private static final int AMMO_SIZE = 10;
-        private static final int AMMO_COUNT = 10;
-        private static final Dimension DIMENSIONS = new Dimension(800, 800);
-        private static final float ROOT_TWO_OVER_TWO = (float) Math.sqrt(2) / 2;
-        public static final float ACCELERATION = 0.5f;
-        public static final float DRAG = 0.4f;
-        public static final long TICK = 10L;
-        private final Controller controller = new Controller();
-        private final Player[] players;
-        private final Ammo[] ammo;
-        private final Map<Player, Integer> score = new HashMap<>();
-        private final Thread ticker;
+    /**
+     * The game itself, independent of how it's drawn: the engine, the controls, and the pause
+     * to show the score between rounds. At the end of every tick the game publishes a snapshot,
+     * and painting only ever reads from the latest snapshot, so the render thread never sees
+     * the simulation mid-tick.
+     */
+    private static class Game {
+        public static final int TICK_RATE = 100;
+        public static final long RESET_PAUSE = 3000L;
+        private static final Rectangle SCORE_AREA = new Rectangle(300, 350, 200, 100);
+        // Far more key events than anyone can type in a tick
+        private static final int INPUT_CAPACITY = 1024;
+        private final Component component;
+        private final InputQueue inputs = new InputQueue(INPUT_CAPACITY);
+        private final Controller controller = new Controller(inputs);
+        private final Engine engine = new Engine(new Random().nextLong());
+        private final InputFrame frame = new InputFrame(engine.getPlayers().length);
+        private final Scheduler scheduler;
+        private final SnapshotExchange snapshots = new SnapshotExchange(engine);
         private boolean reset = false;
         private boolean showScore = false;
-        private short tickCounter = 0;
-
-        public GamePanel() {
-            Rectangle bounds = new Rectangle(0,0, DIMENSIONS.width, DIMENSIONS.height);
-            Random rand = new Random();
+        // The flight recorder event for the pause in progress
+        private GameEvents.Reset resetEvent = null;
+
+        /**
+         * Create a game that renders through the given renderer, or that only ticks if the
+         * renderer is null.
+         */
+        Game(Component component, Scheduler.Renderer renderer, int frameRate) {
+            this.component = component;
+            scheduler = renderer == null ?
+                    new Scheduler(this::tick, TICK_RATE) :
+                    new Scheduler(this::tick, renderer, TICK_RATE, frameRate);
+            component.addKeyListener(controller);
+            reset = true; // Cheap hack to warm up the score display
 
-            setBackground(Color.WHITE);
-            setFocusable(true);
+            if (Boolean.getBoolean("spheroids.metrics")) {
+                engine.setMetrics(new TickMetrics().register("game"));
+            }
+        }
 
-            players = new Player[] {
-                    new Player(200, 400, PLAYER_SIZE, bounds, this, Color.BLUE),
-                    new Player(600, 400, PLAYER_SIZE, bounds, this, Color.RED)
-            };
-            ammo = new Ammo[AMMO_COUNT];
+        void start() {
+            scheduler.start();
+        }
 
-            for (int i = 0; i < AMMO_COUNT / 2; i++) {
-                int x = rand.nextInt(AMMO_SIZE, 800 - AMMO_SIZE);
-                int y = rand.nextInt(AMMO_SIZE, 800 - AMMO_SIZE);
+        /**
+         * Show the score and pause the simulation. The round restarts when the scheduler resumes.
+         */
+        private void reset() {
+            resetEvent = new GameEvents.Reset();
+            resetEvent.begin();
+            component.removeKeyListener(controller);
+            showScore = true;
+            scheduler.pause(RESET_PAUSE, this::restart);
+        }
 
-                ammo[2 * i] = new Ammo(x, y, AMMO_SIZE, bounds, this);
-                ammo[2 * i + 1] = new Ammo(800 - x, 800 - y, AMMO_SIZE, bounds, this);
-            };
+        private void restart() {
+            resetEvent.end();
 
-            for (Player p : players) {
-                score.put(p, 0);
+            if (resetEvent.shouldCommit()) {
+                resetEvent.tick = engine.getTick();
+                resetEvent.commit();
             }
 
-            addKeyListener(controller);
-            reset = true; // Cheap hack to warm up the score display
-            ticker = startTicker();
+            resetEvent = null;
+            engine.restart();
+            showScore = false;
+            // Forget anything typed between rounds
+            inputs.clear();
+            frame.reset();
+            component.addKeyListener(controller);
         }
 
-        private Thread startTicker() {
-            Thread ticker = Executors.defaultThreadFactory().newThread(new Runnable() {
-                @Override
-                public void run() {
-                    while (true) {
-                        tick();
+        private void tick() {
+            final TickMetrics metrics = engine.getMetrics();
 
-                        try {
-                            Thread.sleep(TICK);
-                        } catch (InterruptedException e) {
-                            break;
-                        }
-                    }
+            if (reset) {
+                reset();
+                reset = false;
+            } else {
+                final long now = System.nanoTime();
+
+                inputs.drain(frame, now);
+
+                if (metrics != null) {
+                    metrics.record(TickMetrics.Phase.INPUT, now);
                 }
-            });
-            ticker.start();
 
-            return ticker;
+                engine.tick(frame);
+                reset = engine.isRoundOver();
+            }
+
+            final long start = metrics != null ? System.nanoTime() : 0L;
+            final Snapshot snapshot = snapshots.back();
+
+            engine.snapshot(snapshot);
+            snapshot.showScore = showScore;
+            snapshots.publish();
+
+            if (metrics != null) {
+                metrics.record(TickMetrics.Phase.PUBLISH, start);
+            }
         }
 
-        private void reset() {
-            removeKeyListener(controller);
-            controller.reset();
-            showScore = true;
-            repaint();
+        /**
+         * Get the latest snapshot. Only the rendering thread may call this, and the snapshot
+         * stays valid until it calls this again.
+         */
+        Snapshot latest() {
+            return snapshots.latest();
+        }
 
-            try {
-                Thread.sleep(3000L);
+        /**
+         * Get how far the clock is between the last tick and the next one.
+         */
+        float alpha() {
+            return scheduler.getAlpha();
+        }
 
-            for (Sprite s : players) {
-                s.reset();
+        /**
+         * Paint a snapshot of the game with each sprite the given fraction of the way from where
+         * it was at the start of the tick to where it ended up, skipping any sprite that's
+         * entirely outside the clip.
+         */
+        void paint(Graphics g, Snapshot snapshot, float alpha) {
+            final Rectangle clip = g.getClipBounds();
+
+            for (int i = 0; i < snapshot.players.length; i++) {
+                paint(g, clip, snapshot.players[i], Snapshot.lerp(snapshot.lastPlayerX[i], snapshot.playerX[i], alpha),
+                        Snapshot.lerp(snapshot.lastPlayerY[i], snapshot.playerY[i], alpha), snapshot.playerAngle[i]);
             }
 
-            for (Sprite s : ammo) {
-                s.reset();
+            for (int i = 0; i < snapshot.ammoCount; i++) {
+                paint(g, clip, snapshot.ammo[i], Snapshot.lerp(snapshot.lastAmmoX[i], snapshot.ammoX[i], alpha),
+                        Snapshot.lerp(snapshot.lastAmmoY[i], snapshot.ammoY[i], alpha), 0);
             }
 
-            showScore = false;
-            addKeyListener(controller);
+            if (snapshot.showScore) {
+                g.setColor(Color.GRAY);
+                g.fillRect(SCORE_AREA.x, SCORE_AREA.y, SCORE_AREA.width, SCORE_AREA.height);
+                g.setColor(Color.BLACK);
+                g.fillRect(398, 350, 4, 100);
+                g.setFont(g.getFont().deriveFont(60.0f));
+                g.setColor(Color.BLUE);
+                g.drawString(Integer.toString(snapshot.score[0]), 330, 425);
+                g.setColor(Color.RED);
+                g.drawString(Integer.toString(snapshot.score[1]), 430, 425);
+            }
         }
 
-        @Override
-        public float[] drag(int x, int y, float xVel, float yVel) {
-            // The sign for the drag is the opposite of the velocity
-            int xSign = xVel < 0 ? 1 : -1;
-            int ySign = yVel < 0 ? 1 : -1;
-            float xDrag;
-            float yDrag;
-
-            if ((xVel != 0) && (yVel != 0)) {
-                final float magnitude = Utils.magnitude(xVel, yVel);
-
-                xDrag = Math.min(Math.abs(xVel), Math.abs(xVel) / magnitude * DRAG) * xSign;
-                yDrag = Math.min(Math.abs(yVel), Math.abs(yVel) / magnitude * DRAG) * ySign;
-            } else {
-                xDrag = Math.min(Math.abs(xVel), DRAG) * xSign;
-                yDrag = Math.min(Math.abs(yVel), DRAG) * ySign;
-            }
+        private static void paint(Graphics g, Rectangle clip, Sprite sprite, int x, int y, int angle) {
+            final Shape shape = sprite.getShape(angle);
 
-            return new float[] {xDrag, yDrag};
+            if ((clip == null) || clip.intersects(x + shape.minX, y + shape.minY,
+                    shape.maxX - shape.minX + 1, shape.maxY - shape.minY + 1)) {
+                sprite.paint(g, x, y, angle);
+            }
         }
+    }
 
-        private void tick() {
-            if (reset) {
-                reset();
-                reset = false;
-            } else {
-                for (int p = 0; p < players.length; p++) {
-                    float xVel = ACCELERATION * controller.getXDir(p);
-                    float yVel = ACCELERATION * controller.getYDir(p);
+    /**
+     * Passive rendering: for each frame, the panel takes the latest snapshot and the scheduler's
+     * alpha on the event thread and paints only the areas covered by the sprites that moved since
+     * the last frame, where they were drawn and where they are drawn now, plus the score overlay
+     * if it came or went. Areas
+     * that overlap are merged, but areas apart from each other are painted separately, because
+     * Swing's repaint would coalesce them into one rectangle spanning the whole arena. Sprites at
+     * rest outside those areas aren't painted at all.
+     */
+    @SuppressWarnings("serial")
+    private static class GamePanel extends JPanel {
+        private static final Dimension DIMENSIONS = new Dimension(Engine.WIDTH, Engine.HEIGHT);
+        public static final int FRAME_RATE = 33;
+        private final Game game;
+        // What shape was painted where at the last frame, for each player and then each ammo slot
+        private final Shape[] painted;
+        private final int[] paintedX;
+        private final int[] paintedY;
+        private boolean paintedScore = false;
+        // The dirty areas of this frame, as corners, no two of which overlap
+        private final int[] dirtyX0;
+        private final int[] dirtyY0;
+        private final int[] dirtyX1;
+        private final int[] dirtyY1;
+        private int dirtyCount = 0;
+        private final Runnable repaintDirty = this::repaintDirty;
+        // The alpha the scheduler rendered the latest frame with
+        private volatile float frameAlpha = 0f;
+        // The snapshot and alpha being painted, which only the event thread touches
+        private Snapshot snapshot = null;
+        private float alpha = 0f;
 
-                    if ((xVel != 0) && (yVel != 0)) {
-                        xVel *= ROOT_TWO_OVER_TWO;
-                        yVel *= ROOT_TWO_OVER_TWO;
-                    }
+        public GamePanel() {
+            setBackground(Color.WHITE);
+            setFocusable(true);
 
-                    players[p].incrementVelocity(xVel, yVel);
-                    players[p].move();
+            game = new Game(this, alpha -> {
+                frameAlpha = alpha;
+                SwingUtilities.invokeLater(repaintDirty);
+            }, FRAME_RATE);
+            paintedX = new int[game.engine.getPlayers().length + game.engine.getAmmo().length];
+            paintedY = new int[paintedX.length];
+            painted = new Shape[paintedX.length];
+            // Each sprite can leave a hole and move to somewhere new, and the score can change
+            dirtyX0 = new int[paintedX.length * 2 + 1];
+            dirtyY0 = new int[dirtyX0.length];
+            dirtyX1 = new int[dirtyX0.length];
+            dirtyY1 = new int[dirtyX0.length];
+            Arrays.fill(paintedX, Integer.MIN_VALUE);
+            game.start();
+        }
 
-                    if (controller.isShooting(p)) {
-                        players[p].shoot();
-                    }
+        /**
+         * Take the latest snapshot and alpha and paint everything that changed since the last
+         * frame.
+         */
+        private void repaintDirty() {
+            snapshot = game.latest();
+            alpha = frameAlpha;
+            dirtyCount = 0;
+
+            int i = 0;
+
+            for (int p = 0; p < snapshot.players.length; p++) {
+                addIfMoved(snapshot.players[p].getShape(snapshot.playerAngle[p]),
+                        Snapshot.lerp(snapshot.lastPlayerX[p], snapshot.playerX[p], alpha),
+                        Snapshot.lerp(snapshot.lastPlayerY[p], snapshot.playerY[p], alpha), i++);
+            }
+
+            for (int a = 0; a < snapshot.ammoCount; a++) {
+                addIfMoved(snapshot.ammo[a].getShape(0), Snapshot.lerp(snapshot.lastAmmoX[a], snapshot.ammoX[a], alpha),
+                        Snapshot.lerp(snapshot.lastAmmoY[a], snapshot.ammoY[a], alpha), i++);
+            }
+
+            // Ammo that has despawned leaves a hole where it was
+            for (; i < paintedX.length; i++) {
+                if (paintedX[i] != Integer.MIN_VALUE) {
+                    addBox(painted[i], paintedX[i], paintedY[i]);
+                    paintedX[i] = Integer.MIN_VALUE;
                 }
+            }
 
-                for (Ammo a : ammo) {
-                    if (a.isLive()) {
-                        Player shooter = a.getShooter();
-                        a.move();
-
-                        for (Player p : players) {
-                            if ((p != shooter) && a.overlaps(p)) {
-                                score.put(shooter, score.get(shooter) + 1);
-
-                                reset = true;
-                            }
-                        }
-                    } else if (a.getShooter() == null) {
-                        for (int p = 0; p < players.length; p++) {
-                            if (!players[p].isLoaded() && players[p].overlaps(a)) {
-                                players[p].load(a);
-                            }
-                        }
-                    }
+            if (snapshot.showScore != paintedScore) {
+                addDirty(Game.SCORE_AREA.x, Game.SCORE_AREA.y, Game.SCORE_AREA.x + Game.SCORE_AREA.width,
+                        Game.SCORE_AREA.y + Game.SCORE_AREA.height);
+                paintedScore = snapshot.showScore;
+            }
+
+            for (int d = 0; d < dirtyCount; d++) {
+                paintImmediately(dirtyX0[d], dirtyY0[d], dirtyX1[d] - dirtyX0[d], dirtyY1[d] - dirtyY0[d]);
+            }
+        }
+
+        private void addIfMoved(Shape shape, int x, int y, int i) {
+            if ((x != paintedX[i]) || (y != paintedY[i]) || (shape != painted[i])) {
+                if (paintedX[i] != Integer.MIN_VALUE) {
+                    addBox(painted[i], paintedX[i], paintedY[i]);
                 }
+
+                addBox(shape, x, y);
+                painted[i] = shape;
+                paintedX[i] = x;
+                paintedY[i] = y;
             }
+        }
 
-            tickCounter += 1;
+        private void addBox(Shape shape, int x, int y) {
+            addDirty(x + shape.minX, y + shape.minY, x + shape.maxX + 1, y + shape.maxY + 1);
+        }
 
-            if (tickCounter == 3) {
-                this.repaint();
-                tickCounter = 0;
+        /**
+         * Add an area to the dirty list, merging it with every area it overlaps. A merged area
+         * can grow into others, so the search starts over until nothing overlaps it.
+         */
+        private void addDirty(int x0, int y0, int x1, int y1) {
+            for (int d = 0; d < dirtyCount; d++) {
+                if ((x0 < dirtyX1[d]) && (dirtyX0[d] < x1) && (y0 < dirtyY1[d]) && (dirtyY0[d] < y1)) {
+                    x0 = Math.min(x0, dirtyX0[d]);
+                    y0 = Math.min(y0, dirtyY0[d]);
+                    x1 = Math.max(x1, dirtyX1[d]);
+                    y1 = Math.max(y1, dirtyY1[d]);
+                    dirtyCount -= 1;
+                    dirtyX0[d] = dirtyX0[dirtyCount];
+                    dirtyY0[d] = dirtyY0[dirtyCount];
+                    dirtyX1[d] = dirtyX1[dirtyCount];
+                    dirtyY1[d] = dirtyY1[dirtyCount];
+                    d = -1;
+                }
             }
+
+            dirtyX0[dirtyCount] = x0;
+            dirtyY0[dirtyCount] = y0;
+            dirtyX1[dirtyCount] = x1;
+            dirtyY1[dirtyCount] = y1;
+            dirtyCount += 1;
         }
 
         @Override
@@ -188,25 +343,112 @@ public class Spheroids {
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
 
-            for (Sprite sprite : players) {
-                sprite.paint(g);
+            if (snapshot != null) {
+                game.paint(g, snapshot, alpha);
             }
+        }
+    }
 
-            for (Sprite sprite : ammo) {
-                sprite.paint(g);
+    /**
+     * Active rendering: a dedicated thread draws each frame into the back buffer of a buffer
+     * strategy and flips it, on a fixed frame schedule or as fast as it can, asking the scheduler
+     * for the alpha as it goes. Swing's repaint scheduling and coalescing are out of the loop
+     * entirely.
+     */
+    @SuppressWarnings("serial")
+    private static class GameCanvas extends Canvas {
+        private static final Dimension DIMENSIONS = new Dimension(Engine.WIDTH, Engine.HEIGHT);
+        public static final int FRAME_RATE = 60;
+        private final Game game;
+        // Zero when the frame rate is uncapped
+        private final long frameNanos;
+        private volatile boolean running = false;
+
+        /**
+         * Create a canvas.
+         * @param frameRate the target frames per second, or 0 for no cap
+         */
+        public GameCanvas(int frameRate) {
+            if (frameRate < 0) {
+                throw new IllegalArgumentException("frame rate must not be negative: " + frameRate);
             }
 
-            if (showScore) {
-                g.setColor(Color.GRAY);
-                g.fillRect(300, 350, 200, 100);
-                g.setColor(Color.BLACK);
-                g.fillRect(398, 350, 4, 100);
-                g.setFont(g.getFont().deriveFont(60.0f));
-                g.setColor(Color.BLUE);
-                g.drawString(Integer.toString(score.get(players[0])), 330, 425);
-                g.setColor(Color.RED);
-                g.drawString(Integer.toString(score.get(players[1])), 430, 425);
+            setBackground(Color.WHITE);
+            setFocusable(true);
+            // We draw every frame ourselves, so don't let the AWT paint over them
+            setIgnoreRepaint(true);
+
+            game = new Game(this, null, 0);
+            frameNanos = frameRate == 0 ? 0L : TimeUnit.SECONDS.toNanos(1) / frameRate;
+        }
+
+        @Override
+        public Dimension getPreferredSize() {
+            return DIMENSIONS;
+        }
+
+        /**
+         * Start the simulation and the render loop. The canvas must already be displayable.
+         */
+        public void start() {
+            createBufferStrategy(2);
+            running = true;
+
+            Thread thread = new Thread(this::run, "render");
+
+            thread.setDaemon(true);
+            thread.start();
+            game.start();
+            requestFocus();
+        }
+
+        public void stop() {
+            running = false;
+        }
+
+        private void run() {
+            final BufferStrategy strategy = getBufferStrategy();
+            long nextFrame = System.nanoTime();
+
+            while (running) {
+                render(strategy);
+
+                if (frameNanos > 0) {
+                    nextFrame += frameNanos;
+
+                    final long wait = nextFrame - System.nanoTime();
+
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    } else if (wait < -frameNanos) {
+                        // Don't try to render a burst of frames to catch up
+                        nextFrame = System.nanoTime();
+                    }
+                }
             }
         }
+
+        private void render(BufferStrategy strategy) {
+            // The buffers can be lost at any time, such as when the display mode changes, in
+            // which case the frame has to be drawn again
+            do {
+                do {
+                    final Graphics g = strategy.getDrawGraphics();
+
+                    try {
+                        g.setColor(getBackground());
+                        g.fillRect(0, 0, getWidth(), getHeight());
+                        game.paint(g, game.latest(), game.alpha());
+                    } finally {
+                        g.dispose();
+                    }
+                } while (strategy.contentsRestored());
+
+                strategy.show();
+            } while (strategy.contentsLost());
+
+            // Flush the pipeline so the frame is on screen now rather than whenever it's batched
+            Toolkit.getDefaultToolkit().sync();
+        }
     }
 }
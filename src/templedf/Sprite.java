@@ -3,313 +3,276 @@ package templedf;
 import java.awt.Graphics;
 import java.awt.Point;
 import java.awt.Rectangle;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
 
 public abstract class Sprite {
-    static int REGION_DIVS = 4;
-    private final int initialX;
-    private final int initialY;
-    private float x;
-    private float y;
-    protected float xVelocity;
-    protected float yVelocity;
-    protected final Point[] vertices;
+    // Where the sprite goes when it's reset
+    private int initialX;
+    private int initialY;
+    protected Point[] vertices;
     protected final Rectangle bounds;
     protected final DragModel drag;
-    protected final float[] axisSlopes;
-    protected final float[][] projections;
-    protected final int[] xRegionBoundaries;
-    protected final int[] yRegionBoundaries;
-    protected final int minX;
-    protected final int maxX;
-    protected final int minY;
-    protected final int maxY;
-    protected Integer[] regionCache = null;
+    // The shape at the sprite's current angle, and the shape it was built with at angle 0
+    protected Shape shape;
+    private final Shape unrotated;
+    private int angle = 0;
+    // The sprite's position and velocity live in the world's arrays at this ID
+    PhysicsWorld world;
+    int id;
 
     Sprite(int x, int y, Point[] vertices, Rectangle bounds, DragModel drag) {
         initialX = x;
         initialY = y;
-        setX(initialX);
-        setY(initialY);
         this.bounds = new Rectangle(bounds);
-        this.vertices = new Point[vertices.length];
+        this.unrotated = Shape.of(vertices);
+        this.shape = unrotated;
+        this.vertices = shape.vertices;
         this.drag = drag;
-
-        int minX = Integer.MAX_VALUE;
-        int maxX = Integer.MIN_VALUE;
-        int minY = Integer.MAX_VALUE;
-        int maxY = Integer.MIN_VALUE;
-
-        for (int i = 0; i < vertices.length; i++) {
-            this.vertices[i] = new Point(vertices[i]);
-
-            minX = Math.min(minX, vertices[i].x);
-            maxX = Math.min(maxX, vertices[i].x);
-            minY = Math.min(minY, vertices[i].y);
-            maxY = Math.min(maxY, vertices[i].y);
-        }
-
-        this.minX = minX;
-        this.maxX = maxX;
-        this.minY = minY;
-        this.maxY = maxY;
-        axisSlopes = calculateAxisSlopes();
-        projections = calculateProjections();
-        xRegionBoundaries = calculateBoundaries(bounds.x, bounds.width);
-        yRegionBoundaries = calculateBoundaries(bounds.y, bounds.height);
+        // Every sprite starts out in a world of its own until it's added to a shared one
+        new PhysicsWorld(drag, 1).add(this);
+        setX(initialX);
+        setY(initialY);
     }
 
     /**
-     * Calculate the slopes of the axes as the negative inverse of the slopes between each pair
-     * of vertices. Strictly speaking we want a vector, but if we calculate the slope, then the
-     * slope is y when x is 1. The nth element of the returned array is the slope of the axis that is
-     * normal to the side formed by the nth vertex and the n+1st vertex.
-     * @return the slopes of the normal lines to each pair of vertices
+     * Get the x coordinate of the center of the sprite.
+     * @return the x coordinate of the center of the sprite
      */
-    private float[] calculateAxisSlopes() {
-        float[] axisSlopes = new float[vertices.length];
-
-        for (int i = 0; i < vertices.length - 1; i++) {
-            // We shortcut taking the inverse by calculating (x2-x1)/(y1-y2)
-            axisSlopes[i] = (float)(vertices[i + 1].x - vertices[i].x) / (vertices[i].y - vertices[i + 1].y);
-        }
-
-        axisSlopes[vertices.length - 1] = (float)(vertices[0].x - vertices[vertices.length - 1].x) / (vertices[vertices.length - 1].y - vertices[0].y);
-
-        return axisSlopes;
+    public int getX() {
+        return (int)world.x[id];
     }
 
     /**
-     * Precalculate the projections of each vertex onto each axis. This calculation is half
-     * of the work needed to perform SAT collision detection. The nth element of the returned array
-     * is a 2-element array containing the min and max projections for the nth axis.
-     * @return the procalculated min and max projections
+     * Get the y coordinate of the center of the sprite.
+     * @return the y coordinate of the center of the sprite
      */
-    private float[][] calculateProjections() {
-        float[][] projections = new float[axisSlopes.length][];
-
-        for (int i = 0; i < axisSlopes.length; i++) {
-            // If slope is infinite, the axis magnitude is infinite, but we ignore it
-            final float axisMagnitude = Utils.magnitude(axisSlopes[i]);
-            float min = Float.MAX_VALUE;
-            float max = -Float.MAX_VALUE;
-
-            for (int j = 0; j < vertices.length; j++) {
-                // We calculate the dot product of the vertex as a vector starting at the origin with
-                // the axis as a vector starting at the origin. To get the axis we let the slope be
-                // the y coordinate and let the x coordinate be 1. We then divide the dot product by
-                // the magnitude of the axis to get the projection.
-                final float projection;
-
-                if ((axisSlopes[i] == Float.NEGATIVE_INFINITY) || (axisSlopes[i] == Float.POSITIVE_INFINITY)) {
-                    projection = vertices[j].y;
-                } else {
-                    projection = Utils.dot(vertices[j], axisSlopes[i]) / axisMagnitude;
-                }
-
-                if (projection < min) {
-                    min = projection;
-                }
-
-                if (projection > max) {
-                    max = projection;
-                }
-            }
-
-            projections[i] = new float[] {min, max};
-        }
+    public int getY() {
+        return (int)world.y[id];
+    }
 
-        return projections;
+    public void setX(float x) {
+        world.setX(id, x);
     }
 
-    private int[] calculateBoundaries(int min, int max) {
-        int[] bounds = new int[REGION_DIVS];
-        int region = (max - min) / (REGION_DIVS + 1);
+    public void setY(float y) {
+        world.setY(id, y);
+    }
 
-        bounds[REGION_DIVS - 1] = max - region;
+    public float getXVelocity() {
+        return world.xVel[id];
+    }
 
-        for (int i = REGION_DIVS - 2; i >= 0; i--) {
-            bounds[i] = bounds[i + 1] - region;
-        }
+    public float getYVelocity() {
+        return world.yVel[id];
+    }
+
+    protected void setVelocity(float x, float y) {
+        world.xVel[id] = x;
+        world.yVel[id] = y;
+    }
 
-        return bounds;
+    public void incrementVelocity(float x, float y) {
+        world.xVel[id] += x;
+        world.yVel[id] += y;
     }
 
     /**
-     * Get the x coordinate of the center of the sprite.
-     * @return the x coordinate of the center of the sprite
+     * Get the x component of the last nonzero velocity of the sprite.
+     * @return the x component of the sprite's heading
      */
-    public int getX() {
-        return (int)x;
+    protected float getXHeading() {
+        return world.xHeading[id];
     }
 
     /**
-     * Get the y coordinate of the center of the sprite.
-     * @return the y coordinate of the center of the sprite
+     * Get the y component of the last nonzero velocity of the sprite.
+     * @return the y component of the sprite's heading
      */
-    public int getY() {
-        return (int)y;
+    protected float getYHeading() {
+        return world.yHeading[id];
     }
 
-    public void setX(float x) {
-        this.x = x;
+    /**
+     * Whether the sprite bounces off the edges of its bounds rather than stopping at them.
+     * @return whether the sprite bounces
+     */
+    protected boolean bounces() {
+        return false;
     }
 
-    public void setY(float y) {
-        this.y = y;
+    /**
+     * Called by the world when a bouncing sprite comes to rest.
+     */
+    protected void stopped() {
     }
 
-    public void incrementVelocity(float x, float y) {
-        xVelocity += x;
-        yVelocity += y;
+    /**
+     * Make this sprite follow another sprite's position whenever the world steps, or stop
+     * following. Following only happens within a shared world.
+     * @param carrier the sprite to follow, or null to stop following
+     */
+    void setCarrier(Sprite carrier) {
+        world.carry(id, ((carrier != null) && (carrier.world == world)) ? carrier.id : -1);
     }
 
-    public void move() {
-        if ((xVelocity != 0) || (yVelocity != 0)) {
-            float[] drag = this.drag.drag(getX(), getY(), xVelocity, yVelocity);
+    /**
+     * Move this sprite to the exact position of another sprite.
+     * @param sprite the sprite to move to
+     */
+    void moveTo(Sprite sprite) {
+        setX(sprite.world.x[sprite.id]);
+        setY(sprite.world.y[sprite.id]);
+    }
 
-            xVelocity += drag[0];
-            yVelocity += drag[1];
+    public void move() {
+        world.step(id, id + 1);
+    }
 
-            setX(Math.min(Math.max(x + xVelocity, bounds.x), bounds.width));
-            setY(Math.min(Math.max(y + yVelocity, bounds.y), bounds.height));
-            regionCache = null; // Invalidate the cache now that we've moved
+    int getInitialX() {
+        return initialX;
+    }
 
-            if ((x <= bounds.x) || (x >= bounds.width)) {
-                xVelocity = 0;
-            }
+    int getInitialY() {
+        return initialY;
+    }
 
-            if ((y <= bounds.y) || (y >= bounds.height)) {
-                yVelocity = 0;
-            }
-        }
+    /**
+     * Change where this sprite goes when it's reset, without moving it.
+     * @param x the new initial x coordinate
+     * @param y the new initial y coordinate
+     */
+    void setInitialPosition(int x, int y) {
+        initialX = x;
+        initialY = y;
     }
 
     public void reset() {
-        xVelocity = 0;
-        yVelocity = 0;
+        setVelocity(0, 0);
+        setCarrier(null);
         setX(initialX);
         setY(initialY);
-        regionCache = null;
     }
 
-    public boolean overlaps(Sprite sprite) {
-        return overlaps(this, sprite) && overlaps(sprite, this);
+    /**
+     * Get the angle the sprite is turned to.
+     * @return the angle, from 0 to {@link Shape#ANGLES} - 1
+     * @see Shape#rotate(int)
+     */
+    public int getAngle() {
+        return angle;
     }
 
-    private boolean overlaps(Sprite a, Sprite b) {
-        // First check whether the regions overlap and fail fast if they don't
-        List<Integer> regions = b.getRegions();
-
-        regions.retainAll(a.getRegions());
-
-        if (regions.isEmpty()) {
-            return false;
-        }
+    /**
+     * Turn the sprite to an angle. This only looks up the shape at that angle, so it's cheap
+     * enough to do every tick, but it doesn't tell any broadphase the sprite is registered with;
+     * they pick up the new shape at their next update.
+     * @param angle the angle, which is taken modulo {@link Shape#ANGLES}
+     */
+    public void setAngle(int angle) {
+        this.angle = Math.floorMod(angle, Shape.ANGLES);
+        shape = unrotated.rotate(this.angle);
+        vertices = shape.vertices;
+    }
 
-        for (int i = 0; i < b.axisSlopes.length; i++) {
-            // Calculate the distance between the centers projected onto the axis
-            final float axisMagnitude;
-            final float centerDist;
-            float min = Float.MAX_VALUE;
-            float max = -Float.MAX_VALUE;
-
-            if ((b.axisSlopes[i] == Float.POSITIVE_INFINITY) || (b.axisSlopes[i] == Float.NEGATIVE_INFINITY)) {
-                axisMagnitude = 1;
-                centerDist = b.y - a.y;
-            } else {
-                axisMagnitude = Utils.magnitude(b.axisSlopes[i]);
-                // Project the distance between the centers onto the axis
-                centerDist = Utils.dot(Utils.dist(a, b), b.axisSlopes[i]) / axisMagnitude;
-            }
-
-            // Calculate the projection of each of a's vertices onto b's axis
-            for (int j = 0; j < a.vertices.length; j++) {
-                final float projection;
-
-                if ((b.axisSlopes[i] == Float.POSITIVE_INFINITY) || (b.axisSlopes[i] == Float.NEGATIVE_INFINITY)) {
-                    projection = a.vertices[j].y;
-                } else {
-                    projection = Utils.dot(a.vertices[j], b.axisSlopes[i]) / axisMagnitude;
-                }
-
-                if (projection < min) {
-                    min = projection;
-                }
-
-                if (projection > max) {
-                    max = projection;
-                }
-            }
-
-            // Test for overlap
-            if (((centerDist >= 0) && (centerDist > max - b.projections[i][0])) ||
-                    ((centerDist < 0) && (centerDist < min - b.projections[i][1]))) {
-                return false;
-            }
-        }
+    /**
+     * Get the sprite's shape at an angle.
+     * @param angle the angle, which is taken modulo {@link Shape#ANGLES}
+     * @return the shape
+     */
+    Shape getShape(int angle) {
+        return unrotated.rotate(angle);
+    }
 
-        return true;
+    /**
+     * Test whether this sprite overlaps the given sprite. This is the same as
+     * {@link #intersects(Sprite)}; the sprites are found through a {@link Broadphase}.
+     * @param sprite the sprite to test against
+     * @return whether the sprites overlap
+     */
+    public boolean overlaps(Sprite sprite) {
+        return intersects(sprite);
     }
 
-    protected List<Integer> getRegions() {
-        if (regionCache != null) {
-            return new ArrayList<>(Arrays.asList(regionCache));
-        }
+    /**
+     * Test whether this sprite overlaps the given sprite using only the narrowphase. This is
+     * meant for callers that have already done their own broadphase, like
+     * {@link CollisionWorld}.
+     * @param sprite the sprite to test against
+     * @return whether the sprites overlap
+     */
+    public boolean intersects(Sprite sprite) {
+        return test(sprite) == Shape.OVERLAP;
+    }
 
-        List<Integer> list = new ArrayList<>(4);
-        int row;
-        int column;
+    /**
+     * Test whether this sprite overlaps the given sprite, like {@link #intersects(Sprite)}, but
+     * report which tier of the narrowphase rejected the pair.
+     * @param sprite the sprite to test against
+     * @return {@link Shape#OVERLAP}, or the tier that rejected the pair
+     */
+    int test(Sprite sprite) {
+        return shape.pair(sprite.shape).test(sprite.getX() - getX(), sprite.getY() - getY());
+    }
 
-        for (row = REGION_DIVS; row >= 1; row--) {
-            if (getX() > xRegionBoundaries[row - 1]) {
-                break;
-            }
-        }
+    /**
+     * Test whether this sprite touched the given sprite at any point along their paths during
+     * the last step, rather than only where they ended up. This catches a fast sprite that
+     * passed right through the other one. Sprites in different worlds fall back to
+     * {@link #intersects(Sprite)}.
+     * @param sprite the sprite to test against
+     * @return whether the sprites touched
+     */
+    public boolean sweptIntersects(Sprite sprite) {
+        return sweptTest(sprite) == Shape.OVERLAP;
+    }
 
-        for (column = REGION_DIVS; column >= 1; column--) {
-            if (getY() > yRegionBoundaries[column - 1]) {
-                break;
-            }
+    /**
+     * Test whether this sprite touched the given sprite during the last step, like
+     * {@link #sweptIntersects(Sprite)}, but report which tier of the narrowphase rejected the
+     * pair.
+     * @param sprite the sprite to test against
+     * @return {@link Shape#OVERLAP}, or the tier that rejected the pair
+     */
+    int sweptTest(Sprite sprite) {
+        if (sprite.world != world) {
+            return test(sprite);
         }
 
-        list.add(row * (REGION_DIVS + 1) + column);
-
-        int xNeighbor = 0;
-        int yNeighbor = 0;
+        return world.sweptTest(id, sprite.id, shape.pair(sprite.shape));
+    }
 
-        if ((row > 0) && (x + minX <= xRegionBoundaries[row - 1])) {
-            xNeighbor = -1;
-        } else if ((row + 1 < xRegionBoundaries.length) && (x + maxX >= xRegionBoundaries[row])) {
-            xNeighbor = 1;
-        }
+    public abstract void paint(Graphics g);
 
-        if ((column > 0) && (y + minY <= yRegionBoundaries[column - 1])) {
-            yNeighbor = -1;
-        } else if ((column + 1 < yRegionBoundaries.length) && (y + maxY >= yRegionBoundaries[column])) {
-            yNeighbor = 1;
-        }
+    /**
+     * Paint the sprite as if its center were at the given position, such as a position from a
+     * {@link Snapshot}. Subclasses should override this to paint without reading the sprite's
+     * live position.
+     * @param g the graphics to paint into
+     * @param x the x coordinate of the center
+     * @param y the y coordinate of the center
+     */
+    public void paint(Graphics g, int x, int y) {
+        paint(g, x, y, angle);
+    }
 
-        if ((xNeighbor != 0) && (yNeighbor != 0)) {
-            list.add((row + xNeighbor) * (REGION_DIVS + 1) + column + yNeighbor);
-        }
+    /**
+     * Paint the sprite as if its center were at the given position and it were turned to the
+     * given angle. Subclasses that can be turned should override this; the default ignores the
+     * angle.
+     * @param g the graphics to paint into
+     * @param x the x coordinate of the center
+     * @param y the y coordinate of the center
+     * @param angle the angle
+     */
+    public void paint(Graphics g, int x, int y, int angle) {
+        final int dx = x - getX();
+        final int dy = y - getY();
 
-        if (xNeighbor != 0) {
-            list.add((row + xNeighbor) * (REGION_DIVS + 1) + column);
-        }
+        g.translate(dx, dy);
 
-        if (yNeighbor != 0) {
-            list.add(row * (REGION_DIVS + 1) + column + yNeighbor);
+        try {
+            paint(g);
+        } finally {
+            g.translate(-dx, -dy);
         }
-
-        // Cache the regions because we typically will use them several times
-        regionCache = new Integer[list.size()];
-        regionCache = list.toArray(regionCache);
-
-        return list;
     }
-
-    public abstract void paint(Graphics g);
 }
@@ -0,0 +1,130 @@
+package templedf;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsDevice;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.Arrays;
+
+/**
+ * A cache of pre-rendered sprite images in a single color. Each distinct shape is rasterized once
+ * and then blitted wherever a sprite with that shape is drawn, so drawing a sprite costs one
+ * {@code drawImage} rather than a polygon fill. On screen the images are volatile images in
+ * video memory, which are revalidated on every draw and redrawn whenever the display mode
+ * changes or their contents are lost. Off screen, such as when drawing into a buffered image,
+ * they're plain buffered images.
+ * <p>
+ * The images are drawn with the same polygon fill that sprites used to draw themselves with,
+ * offset by whole pixels, so the result is pixel for pixel the same.
+ * <p>
+ * There's no lock: an instance belongs to whoever paints with it, which is one thread at a time
+ * (the event dispatch thread for {@code GamePanel}, the render thread for {@code GameCanvas}).
+ * Each player owns the cache for its color, so its images are released along with the player
+ * when its engine is dropped. The gray ammo images are shared by every ammo sprite and kept for
+ * the life of the class, but there is at most one per ammo shape.
+ */
+final class SpriteImages {
+    private final Color color;
+    // The cached images, indexed by shape ID
+    private Entry[] entries = new Entry[0];
+
+    SpriteImages(Color color) {
+        this.color = color;
+    }
+
+    /**
+     * Draw a shape filled with this cache's color.
+     * @param g the graphics to draw into
+     * @param shape the shape
+     * @param x the x coordinate of the shape's center
+     * @param y the y coordinate of the shape's center
+     */
+    void draw(Graphics g, Shape shape, int x, int y) {
+        if (entries.length <= shape.id) {
+            entries = Arrays.copyOf(entries, shape.id + 1);
+        }
+
+        Entry entry = entries[shape.id];
+
+        if (entry == null) {
+            entry = new Entry(shape, color);
+            entries[shape.id] = entry;
+        }
+
+        entry.draw(g, x + shape.minX, y + shape.minY);
+    }
+
+    private static final class Entry {
+        private final Color color;
+        private final int[] xPoints;
+        private final int[] yPoints;
+        private final int width;
+        private final int height;
+        private Image image = null;
+
+        private Entry(Shape shape, Color color) {
+            this.color = color;
+            xPoints = new int[shape.vertices.length];
+            yPoints = new int[shape.vertices.length];
+
+            for (int i = 0; i < shape.vertices.length; i++) {
+                xPoints[i] = shape.vertices[i].x - shape.minX;
+                yPoints[i] = shape.vertices[i].y - shape.minY;
+            }
+
+            width = shape.maxX - shape.minX + 1;
+            height = shape.maxY - shape.minY + 1;
+        }
+
+        private void draw(Graphics g, int x, int y) {
+            final GraphicsConfiguration configuration =
+                    (g instanceof Graphics2D) ? ((Graphics2D) g).getDeviceConfiguration() : null;
+
+            if ((configuration == null) ||
+                    (configuration.getDevice().getType() == GraphicsDevice.TYPE_IMAGE_BUFFER)) {
+                if (!(image instanceof BufferedImage)) {
+                    image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+                    render(image);
+                }
+
+                g.drawImage(image, x, y, null);
+            } else {
+                VolatileImage image = (this.image instanceof VolatileImage) ? (VolatileImage) this.image : null;
+
+                do {
+                    final int status = (image == null) ? VolatileImage.IMAGE_INCOMPATIBLE : image.validate(configuration);
+
+                    if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                        image = configuration.createCompatibleVolatileImage(width, height, Transparency.BITMASK);
+                        this.image = image;
+                        render(image);
+                    } else if (status == VolatileImage.IMAGE_RESTORED) {
+                        render(image);
+                    }
+
+                    g.drawImage(image, x, y, null);
+                } while (image.contentsLost());
+            }
+        }
+
+        private void render(Image image) {
+            final Graphics2D g = (Graphics2D) image.getGraphics();
+
+            try {
+                g.setComposite(AlphaComposite.Clear);
+                g.fillRect(0, 0, width, height);
+                g.setComposite(AlphaComposite.SrcOver);
+                g.setColor(color);
+                g.fillPolygon(xPoints, yPoints, xPoints.length);
+            } finally {
+                g.dispose();
+            }
+        }
+    }
+}
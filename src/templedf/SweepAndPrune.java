@@ -0,0 +1,339 @@
+package templedf;
+
+import java.util.Arrays;
+
+/**
+ * An incremental sweep-and-prune broadphase. The ends of every sprite's bounding box are kept in
+ * one sorted list per axis, and the pairs whose boxes overlap on both axes are kept in a set.
+ * Sprites only move a few pixels per tick, so at each {@link #update()} the lists are nearly
+ * sorted already and an insertion sort puts them back in order in close to linear time. Every
+ * swap in the sort is a box end crossing another box's end, which is exactly when a pair starts
+ * or stops overlapping, so the pair set is maintained from the swaps without ever testing pairs
+ * that haven't moved relative to each other.
+ * <p>
+ * Adding or removing a sprite invalidates the lists, and the next update rebuilds them from
+ * scratch. Partitions are slices of the pair set.
+ */
+public class SweepAndPrune implements Broadphase {
+    // The hash table of pairs is kept at or below this fraction full
+    private static final float LOAD_FACTOR = 0.5f;
+    private static final long EMPTY = -1L;
+    private Sprite[] sprites = new Sprite[16];
+    private int[] layers = new int[16];
+    // The box of each sprite at the last update: min x, min y, max x, max y
+    private int[] boxes = new int[16 * 4];
+    private int count = 0;
+    private boolean dirty = true;
+    // The box ends along each axis in sorted order, each encoded as sprite * 2 + (1 if max)
+    private int[] xEnds = new int[32];
+    private int[] yEnds = new int[32];
+    // The overlapping pairs, each encoded as lower sprite << 32 | higher sprite
+    private long[] pairs = new long[16];
+    private int pairCount = 0;
+    // An open-addressed set of the pairs, mapping each one to its index in pairs
+    private long[] tableKeys = new long[64];
+    private int[] tableIndices = new int[64];
+    private long[] sortKeys = new long[0];
+    private int[] active = new int[16];
+
+    public SweepAndPrune() {
+        Arrays.fill(tableKeys, EMPTY);
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the number of overlapping pairs found at the last update.
+     * @return the pair count
+     */
+    public int getPairCount() {
+        return pairCount;
+    }
+
+    @Override
+    public void add(Sprite sprite, int layer) {
+        if (count == sprites.length) {
+            sprites = Arrays.copyOf(sprites, count * 2);
+            layers = Arrays.copyOf(layers, count * 2);
+            boxes = Arrays.copyOf(boxes, count * 8);
+        }
+
+        sprites[count] = sprite;
+        layers[count] = layer;
+        count += 1;
+        dirty = true;
+    }
+
+    /**
+     * Remove a sprite from the broadphase. The last registered sprite takes its place, so the
+     * order of the sprites in a pair may change.
+     * @param sprite the sprite to remove
+     * @return whether the sprite was registered
+     */
+    @Override
+    public boolean remove(Sprite sprite) {
+        for (int i = 0; i < count; i++) {
+            if (sprites[i] == sprite) {
+                count -= 1;
+                sprites[i] = sprites[count];
+                layers[i] = layers[count];
+                sprites[count] = null;
+                dirty = true;
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public void update() {
+        for (int i = 0; i < count; i++) {
+            final Sprite sprite = sprites[i];
+            final Shape shape = sprite.shape;
+            final PhysicsWorld world = sprite.world;
+
+            // The box covers everywhere the sprite passed through, not just where it is now
+            boxes[i * 4] = world.getPathMinX(sprite.id) + shape.minX;
+            boxes[i * 4 + 1] = world.getPathMinY(sprite.id) + shape.minY;
+            boxes[i * 4 + 2] = world.getPathMaxX(sprite.id) + shape.maxX;
+            boxes[i * 4 + 3] = world.getPathMaxY(sprite.id) + shape.maxY;
+        }
+
+        if (dirty) {
+            rebuild();
+            dirty = false;
+        } else {
+            sort(xEnds, 0);
+            sort(yEnds, 1);
+        }
+    }
+
+    @Override
+    public void forEachPair(PairVisitor visitor, int partition, int partitions) {
+        final int from = (int)((long)pairCount * partition / partitions);
+        final int to = (int)((long)pairCount * (partition + 1) / partitions);
+
+        for (int i = from; i < to; i++) {
+            visitor.visit(sprites[(int)(pairs[i] >>> 32)], sprites[(int)pairs[i]]);
+        }
+    }
+
+    /**
+     * Sort the box ends from scratch and find the overlapping pairs with a single sweep along x.
+     */
+    private void rebuild() {
+        if (sortKeys.length < count * 2) {
+            xEnds = new int[count * 2];
+            yEnds = new int[count * 2];
+            sortKeys = new long[count * 2];
+            active = new int[count];
+        }
+
+        sortEnds(xEnds, 0);
+        sortEnds(yEnds, 1);
+        Arrays.fill(tableKeys, EMPTY);
+        pairCount = 0;
+
+        int activeCount = 0;
+
+        for (int e = 0; e < count * 2; e++) {
+            final int i = xEnds[e] >> 1;
+
+            if (isMax(xEnds[e])) {
+                for (int a = 0; a < activeCount; a++) {
+                    if (active[a] == i) {
+                        active[a] = active[--activeCount];
+                        break;
+                    }
+                }
+            } else {
+                for (int a = 0; a < activeCount; a++) {
+                    final int j = active[a];
+
+                    if ((layers[i] != layers[j]) && overlaps(i, j, 1)) {
+                        addPair(i, j);
+                    }
+                }
+
+                active[activeCount++] = i;
+            }
+        }
+    }
+
+    private void sortEnds(int[] ends, int axis) {
+        for (int i = 0; i < count; i++) {
+            sortKeys[i * 2] = endKey(i * 2, axis);
+            sortKeys[i * 2 + 1] = endKey(i * 2 + 1, axis);
+        }
+
+        Arrays.sort(sortKeys, 0, count * 2);
+
+        for (int e = 0; e < count * 2; e++) {
+            final int low = (int)sortKeys[e];
+
+            ends[e] = ((low & Integer.MAX_VALUE) << 1) | (low >>> 31);
+        }
+    }
+
+    /**
+     * Order box ends by position, with mins before maxes at the same position so that boxes
+     * that touch count as overlapping.
+     */
+    private long endKey(int end, int axis) {
+        return ((long)value(end, axis) << 32) | ((long)(end & 1) << 31) | (end >> 1);
+    }
+
+    /**
+     * Restore the order of the box ends along one axis after the sprites have moved, updating
+     * the pairs as ends cross each other.
+     */
+    private void sort(int[] ends, int axis) {
+        for (int e = 1; e < count * 2; e++) {
+            final int end = ends[e];
+            final int value = value(end, axis);
+            int f = e - 1;
+
+            while ((f >= 0) && ((value(ends[f], axis) > value) ||
+                    ((value(ends[f], axis) == value) && isMax(ends[f]) && !isMax(end)))) {
+                final int passed = ends[f];
+                final int i = end >> 1;
+                final int j = passed >> 1;
+
+                if (!isMax(end) && isMax(passed)) {
+                    // A min moving below another box's max: the boxes may have started to overlap
+                    if ((layers[i] != layers[j]) && overlaps(i, j, 0) && overlaps(i, j, 1)) {
+                        addPair(i, j);
+                    }
+                } else if (isMax(end) && !isMax(passed)) {
+                    // A max moving below another box's min: the boxes no longer overlap
+                    removePair(i, j);
+                }
+
+                ends[f + 1] = passed;
+                f -= 1;
+            }
+
+            ends[f + 1] = end;
+        }
+    }
+
+    private int value(int end, int axis) {
+        return boxes[(end >> 1) * 4 + axis + (end & 1) * 2];
+    }
+
+    private static boolean isMax(int end) {
+        return (end & 1) != 0;
+    }
+
+    private boolean overlaps(int i, int j, int axis) {
+        return (boxes[i * 4 + axis] <= boxes[j * 4 + axis + 2]) &&
+                (boxes[j * 4 + axis] <= boxes[i * 4 + axis + 2]);
+    }
+
+    private static long key(int i, int j) {
+        return i < j ? ((long)i << 32) | j : ((long)j << 32) | i;
+    }
+
+    private int slot(long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+
+        return (int)(h ^ (h >>> 32)) & (tableKeys.length - 1);
+    }
+
+    private void addPair(int i, int j) {
+        final long key = key(i, j);
+        final int mask = tableKeys.length - 1;
+        int s = slot(key);
+
+        while (tableKeys[s] != EMPTY) {
+            if (tableKeys[s] == key) {
+                return;
+            }
+
+            s = (s + 1) & mask;
+        }
+
+        if (pairCount == pairs.length) {
+            pairs = Arrays.copyOf(pairs, pairCount * 2);
+        }
+
+        tableKeys[s] = key;
+        tableIndices[s] = pairCount;
+        pairs[pairCount++] = key;
+
+        if (pairCount > tableKeys.length * LOAD_FACTOR) {
+            rehash(tableKeys.length * 2);
+        }
+    }
+
+    private void removePair(int i, int j) {
+        final long key = key(i, j);
+        final int mask = tableKeys.length - 1;
+        int s = slot(key);
+
+        while (tableKeys[s] != key) {
+            if (tableKeys[s] == EMPTY) {
+                return;
+            }
+
+            s = (s + 1) & mask;
+        }
+
+        // Fill the hole in the list with the last pair
+        final int index = tableIndices[s];
+
+        pairCount -= 1;
+
+        if (index != pairCount) {
+            final long last = pairs[pairCount];
+            int t = slot(last);
+
+            while (tableKeys[t] != last) {
+                t = (t + 1) & mask;
+            }
+
+            pairs[index] = last;
+            tableIndices[t] = index;
+        }
+
+        // Shift later entries in the probe sequence back so that none of them is cut off by
+        // the hole in the table
+        int hole = s;
+
+        for (int t = (s + 1) & mask; tableKeys[t] != EMPTY; t = (t + 1) & mask) {
+            final int home = slot(tableKeys[t]);
+
+            if (((t - home) & mask) >= ((t - hole) & mask)) {
+                tableKeys[hole] = tableKeys[t];
+                tableIndices[hole] = tableIndices[t];
+                hole = t;
+            }
+        }
+
+        tableKeys[hole] = EMPTY;
+    }
+
+    private void rehash(int capacity) {
+        tableKeys = new long[capacity];
+        tableIndices = new int[capacity];
+        Arrays.fill(tableKeys, EMPTY);
+
+        final int mask = capacity - 1;
+
+        for (int p = 0; p < pairCount; p++) {
+            int s = slot(pairs[p]);
+
+            while (tableKeys[s] != EMPTY) {
+                s = (s + 1) & mask;
+            }
+
+            tableKeys[s] = pairs[p];
+            tableIndices[s] = p;
+        }
+    }
+}
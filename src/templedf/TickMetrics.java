@@ -0,0 +1,267 @@
+package templedf;
+
+import java.beans.ConstructorProperties;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Where the time in each tick goes. The engine records the latency of each phase of a tick in a
+ * {@link Histogram}, along with counts of what the collision phases did, and the whole lot is
+ * readable over JMX once {@link #register(String)} has been called. Recording is lock-free and
+ * takes a {@link System#nanoTime()} call and a few atomic increments per phase. An engine
+ * without metrics skips all of it for the price of a null check per phase. See
+ * {@link Engine#setMetrics(TickMetrics)}.
+ */
+public final class TickMetrics implements TickMetricsMXBean {
+    /**
+     * The phases of a tick, in the order they happen.
+     */
+    public enum Phase {
+        /**
+         * Draining the queued key events into the tick's controls.
+         */
+        INPUT,
+        /**
+         * Accelerating and moving the players, and shooting.
+         */
+        PLAYERS,
+        /**
+         * Moving the ammo.
+         */
+        AMMO,
+        /**
+         * Updating the broadphase.
+         */
+        BROADPHASE,
+        /**
+         * Testing the candidate pairs for hits and pickups.
+         */
+        NARROWPHASE,
+        /**
+         * Applying the hits and pickups.
+         */
+        PICKUPS,
+        /**
+         * Publishing the tick's snapshot for the renderer.
+         */
+        PUBLISH
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private final Histogram[] phases = new Histogram[PHASES.length];
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong candidatePairs = new AtomicLong();
+    private final AtomicLong narrowphaseTests = new AtomicLong();
+    private final AtomicLong boxRejects = new AtomicLong();
+    private final AtomicLong circleRejects = new AtomicLong();
+    private final AtomicLong satRejects = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong pickups = new AtomicLong();
+
+    public TickMetrics() {
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Register these metrics with the platform MBean server, under
+     * {@code templedf:type=TickMetrics,name=}<i>name</i>.
+     * @param name the name to register under
+     * @return these metrics
+     */
+    public TickMetrics register(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    new ObjectName("templedf:type=TickMetrics,name=" + ObjectName.quote(name)));
+        } catch (JMException e) {
+            throw new IllegalStateException("can't register tick metrics as " + name, e);
+        }
+
+        return this;
+    }
+
+    /**
+     * Record the latency of a phase that started at the given time and ended now.
+     * @param phase the phase
+     * @param start when the phase started, from {@link System#nanoTime()}
+     * @return the time now, which is when the next phase starts
+     */
+    public long record(Phase phase, long start) {
+        final long now = System.nanoTime();
+
+        phases[phase.ordinal()].record(now - start);
+
+        return now;
+    }
+
+    /**
+     * Get the histogram of a phase's latencies in nanoseconds.
+     * @param phase the phase
+     * @return the histogram
+     */
+    public Histogram getHistogram(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    /**
+     * Count a finished tick and what its collision phases did, including how many of the
+     * narrowphase tests each tier rejected.
+     */
+    void countTick(long candidatePairs, long narrowphaseTests, long boxRejects, long circleRejects,
+            long satRejects, long hits, long pickups) {
+        ticks.incrementAndGet();
+        this.candidatePairs.addAndGet(candidatePairs);
+        this.narrowphaseTests.addAndGet(narrowphaseTests);
+        this.boxRejects.addAndGet(boxRejects);
+        this.circleRejects.addAndGet(circleRejects);
+        this.satRejects.addAndGet(satRejects);
+        this.hits.addAndGet(hits);
+        this.pickups.addAndGet(pickups);
+    }
+
+    @Override
+    public Map<String, PhaseStatistics> getPhases() {
+        final Map<String, PhaseStatistics> result = new LinkedHashMap<>();
+
+        for (Phase phase : PHASES) {
+            final Histogram h = phases[phase.ordinal()];
+
+            result.put(phase.name(), new PhaseStatistics(h.getCount(), (long)h.getMean(), h.getPercentile(50),
+                    h.getPercentile(99), h.getMax()));
+        }
+
+        return result;
+    }
+
+    @Override
+    public long getTicks() {
+        return ticks.get();
+    }
+
+    @Override
+    public long getCandidatePairs() {
+        return candidatePairs.get();
+    }
+
+    @Override
+    public long getNarrowphaseTests() {
+        return narrowphaseTests.get();
+    }
+
+    @Override
+    public long getRejectedPairs() {
+        return candidatePairs.get() - narrowphaseTests.get();
+    }
+
+    @Override
+    public long getBoxRejects() {
+        return boxRejects.get();
+    }
+
+    @Override
+    public long getCircleRejects() {
+        return circleRejects.get();
+    }
+
+    @Override
+    public long getSatTests() {
+        return narrowphaseTests.get() - boxRejects.get() - circleRejects.get();
+    }
+
+    @Override
+    public long getSatRejects() {
+        return satRejects.get();
+    }
+
+    @Override
+    public double getBoxRejectRate() {
+        return rate(boxRejects.get());
+    }
+
+    @Override
+    public double getCircleRejectRate() {
+        return rate(circleRejects.get());
+    }
+
+    @Override
+    public double getSatRejectRate() {
+        return rate(satRejects.get());
+    }
+
+    private double rate(long rejects) {
+        final long tests = narrowphaseTests.get();
+
+        return tests > 0 ? (double)rejects / tests : 0.0;
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getPickups() {
+        return pickups.get();
+    }
+
+    @Override
+    public void reset() {
+        for (Histogram h : phases) {
+            h.reset();
+        }
+
+        ticks.set(0L);
+        candidatePairs.set(0L);
+        narrowphaseTests.set(0L);
+        boxRejects.set(0L);
+        circleRejects.set(0L);
+        satRejects.set(0L);
+        hits.set(0L);
+        pickups.set(0L);
+    }
+
+    /**
+     * The latency statistics of one phase, in nanoseconds.
+     */
+    public static final class PhaseStatistics {
+        private final long count;
+        private final long meanNanos;
+        private final long p50Nanos;
+        private final long p99Nanos;
+        private final long maxNanos;
+
+        @ConstructorProperties({"count", "meanNanos", "p50Nanos", "p99Nanos", "maxNanos"})
+        public PhaseStatistics(long count, long meanNanos, long p50Nanos, long p99Nanos, long maxNanos) {
+            this.count = count;
+            this.meanNanos = meanNanos;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMeanNanos() {
+            return meanNanos;
+        }
+
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package templedf;
+
+import java.util.Map;
+
+/**
+ * The management interface for {@link TickMetrics}.
+ */
+public interface TickMetricsMXBean {
+    /**
+     * Get the latency statistics for every phase of a tick, by phase name.
+     * @return the statistics
+     */
+    Map<String, TickMetrics.PhaseStatistics> getPhases();
+
+    long getTicks();
+
+    /**
+     * Get the number of pairs the broadphase handed to the narrowphase.
+     * @return the pair count
+     */
+    long getCandidatePairs();
+
+    /**
+     * Get the number of candidate pairs that were tested with SAT.
+     * @return the test count
+     */
+    long getNarrowphaseTests();
+
+    /**
+     * Get the number of candidate pairs that were rejected without a SAT test, such as a
+     * player and its own live ammo.
+     * @return the rejected pair count
+     */
+    long getRejectedPairs();
+
+    /**
+     * Get the number of narrowphase tests rejected by the bounding box test.
+     * @return the rejected test count
+     */
+    long getBoxRejects();
+
+    /**
+     * Get the number of narrowphase tests rejected by the bounding circle test, after their
+     * bounding boxes overlapped.
+     * @return the rejected test count
+     */
+    long getCircleRejects();
+
+    /**
+     * Get the number of narrowphase tests that neither the bounding boxes nor the bounding
+     * circles could decide, and so went on to SAT.
+     * @return the SAT test count
+     */
+    long getSatTests();
+
+    /**
+     * Get the number of narrowphase tests rejected by SAT.
+     * @return the rejected test count
+     */
+    long getSatRejects();
+
+    /**
+     * Get the fraction of all narrowphase tests rejected by the bounding box test. The three
+     * reject rates add up to the fraction of tests that found no collision.
+     * @return the reject rate from 0 to 1
+     */
+    double getBoxRejectRate();
+
+    /**
+     * Get the fraction of all narrowphase tests rejected by the bounding circle test.
+     * @return the reject rate from 0 to 1
+     */
+    double getCircleRejectRate();
+
+    /**
+     * Get the fraction of all narrowphase tests rejected by SAT.
+     * @return the reject rate from 0 to 1
+     */
+    double getSatRejectRate();
+
+    long getHits();
+
+    long getPickups();
+
+    void reset();
+}
@@ -0,0 +1,62 @@
+package templedf;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The Vector API implementation of the narrowphase. Each lane holds one candidate. The bounding
+ * box and circle tests build a mask of the candidates worth testing, and the loop over the SAT
+ * axes narrows it to the candidates that overlap. This class is
+ * only loaded by {@link Narrowphase#get()} when the {@code jdk.incubator.vector} module is present.
+ */
+final class VectorNarrowphase extends Narrowphase {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    int test(Shape.Pair pair, float ax, float ay, float[] bx, float[] by, int count, boolean[] hits, int[] results) {
+        final int bound = SPECIES.loopBound(count);
+        int total = 0;
+        int i;
+
+        for (i = 0; i < bound; i += SPECIES.length()) {
+            final FloatVector dx = FloatVector.fromArray(SPECIES, bx, i).sub(ax);
+            final FloatVector dy = FloatVector.fromArray(SPECIES, by, i).sub(ay);
+            // The same tiers as the scalar test: the bounding boxes, the bounding circles and then SAT
+            final VectorMask<Float> box = dx.compare(VectorOperators.GE, pair.boxMinX)
+                    .and(dx.compare(VectorOperators.LE, pair.boxMaxX))
+                    .and(dy.compare(VectorOperators.GE, pair.boxMinY))
+                    .and(dy.compare(VectorOperators.LE, pair.boxMaxY));
+            final VectorMask<Float> circle = box.and(dx.mul(dx).add(dy.mul(dy))
+                    .compare(VectorOperators.LE, pair.reachSquared));
+            VectorMask<Float> overlapping = circle;
+
+            for (int n = 0; (n < pair.length) && overlapping.anyTrue(); n++) {
+                // Keep the multiply and add separate so the rounding matches the scalar path
+                final FloatVector dist = dx.mul(pair.axisX[n]).add(dy.mul(pair.axisY[n]));
+
+                overlapping = overlapping.and(dist.compare(VectorOperators.GE, pair.min[n]))
+                        .and(dist.compare(VectorOperators.LE, pair.max[n]));
+            }
+
+            overlapping.intoArray(hits, i);
+
+            final int overlaps = overlapping.trueCount();
+
+            if (results != null) {
+                final int boxes = box.trueCount();
+                final int circles = circle.trueCount();
+
+                results[Shape.OVERLAP] += overlaps;
+                results[Shape.BOX_REJECT] += SPECIES.length() - boxes;
+                results[Shape.CIRCLE_REJECT] += boxes - circles;
+                results[Shape.SAT_REJECT] += circles - overlaps;
+            }
+
+            total += overlaps;
+        }
+
+        return total + test(pair, ax, ay, bx, by, i, count, hits, results);
+    }
+}
@@ -0,0 +1,122 @@
+package templedf;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AmmoPoolTest {
+    private static final Input IDLE = new InputFrame(2);
+
+    @org.junit.jupiter.api.Test
+    void testSpawnAndDespawnKeepActiveAmmoDense() {
+        final Engine engine = new Engine(5L, 4, new CollisionWorld(Engine.CELL_SIZE), 8);
+        final AmmoPool pool = engine.getAmmoPool();
+
+        assertEquals(4, pool.size());
+        assertEquals(8, pool.getCapacity());
+
+        final Ammo first = engine.getAmmo()[0];
+        final Ammo spawned = pool.spawn(100, 200);
+
+        assertEquals(5, pool.size());
+        assertEquals(100, spawned.getX());
+        assertEquals(200, spawned.getY());
+        assertTrue(pool.despawn(first));
+        assertFalse(pool.despawn(first));
+        assertEquals(4, pool.size());
+
+        // The last active piece fills the hole, and the despawned one heads the free ones
+        assertSame(spawned, engine.getAmmo()[0]);
+        assertSame(first, engine.getAmmo()[4]);
+
+        for (int a = 0; a < pool.getCapacity(); a++) {
+            assertEquals(pool.getBase() + a, engine.getAmmo()[a].id);
+        }
+
+        for (int a = 0; a < 4; a++) {
+            assertNotNull(pool.spawn(a, a));
+        }
+
+        assertNull(pool.spawn(0, 0));
+        engine.tick(IDLE);
+        engine.restart();
+        assertEquals(100, spawned.getX());
+        assertEquals(200, spawned.getY());
+    }
+
+    @org.junit.jupiter.api.Test
+    void testDespawnHeldAmmo() {
+        final Engine engine = new Engine(5L, 4, new CollisionWorld(Engine.CELL_SIZE), 4);
+        final Player player = engine.getPlayers()[0];
+        final Ammo held = engine.getAmmo()[1];
+
+        player.load(held);
+        assertTrue(engine.getAmmoPool().despawn(held));
+        assertFalse(player.isLoaded());
+        assertNull(held.getShooter());
+
+        // The piece that took its place isn't carried along
+        final Ammo moved = engine.getAmmo()[1];
+        final int x = moved.getX();
+        final InputFrame right = new InputFrame(2);
+
+        right.set(0, (byte)0x06);
+
+        for (int t = 0; t < 10; t++) {
+            engine.tick(right);
+        }
+
+        assertNotEquals(player.getX(), moved.getX());
+        assertEquals(x, moved.getX());
+    }
+
+    @org.junit.jupiter.api.Test
+    void testFreeAmmoIsInert() {
+        final Engine engine = new Engine(5L, 0, new SweepAndPrune(), 16);
+        final Player player = engine.getPlayers()[0];
+        final Ammo free = engine.getAmmo()[0];
+
+        // A free piece is never picked up, even with a player right on top of it
+        free.setX(player.getX());
+        free.setY(player.getY());
+        engine.tick(IDLE);
+        assertFalse(player.isLoaded());
+
+        final Ammo spawned = engine.getAmmoPool().spawn(player.getX(), player.getY());
+
+        engine.tick(IDLE);
+        assertTrue(player.isLoaded());
+        assertSame(spawned, engine.getAmmo()[0]);
+    }
+
+    @org.junit.jupiter.api.Test
+    void testRestoreActiveAmmo() {
+        final Engine engine = new Engine(5L, 2, new CollisionWorld(Engine.CELL_SIZE), 4);
+        final ByteBuffer buffer = ByteBuffer.allocate(engine.getStateSize());
+
+        engine.save(buffer);
+
+        assertNotNull(engine.getAmmoPool().spawn(300, 300));
+        assertTrue(engine.getAmmoPool().despawn(engine.getAmmo()[0]));
+        buffer.flip();
+        engine.restore(buffer);
+        assertEquals(2, engine.getAmmoPool().size());
+
+        // The piece spawned after the save was dropped by the restore, so the broadphase no
+        // longer has it and the player doesn't pick up the free piece it's standing on
+        final Player player = engine.getPlayers()[0];
+
+        engine.getAmmo()[2].setX(player.getX());
+        engine.getAmmo()[2].setY(player.getY());
+        engine.tick(IDLE);
+        assertFalse(player.isLoaded());
+
+        // Saving again gives back exactly what was restored
+        final ByteBuffer again = ByteBuffer.allocate(engine.getStateSize());
+
+        buffer.flip();
+        engine.restore(buffer);
+        engine.save(again);
+        assertArrayEquals(buffer.array(), again.array());
+    }
+}
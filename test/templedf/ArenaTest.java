@@ -0,0 +1,58 @@
+package templedf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArenaTest {
+    @org.junit.jupiter.api.Test
+    void testBotsPickUpAndScore() {
+        final Arena arena = new Arena(4, 500, 42L);
+        final long[] latencies = arena.run();
+
+        assertEquals(500, latencies.length);
+        assertEquals(500L, arena.getEngine().getTick());
+        assertTrue(arena.getPickups() > 0);
+        assertTrue(arena.getHits() > 0);
+    }
+
+    @org.junit.jupiter.api.Test
+    void testSteerSendsOnlyChanges() {
+        final Engine engine = new Engine(42L, 4, new CollisionWorld(Engine.CELL_SIZE), 4, 2);
+        final InputQueue queue = new InputQueue(16);
+        final InputFrame frame = new InputFrame(2);
+        final Arena.Bots bots = new Arena.Bots(engine, queue);
+
+        bots.steer(1, 1, -1);
+        assertEquals(2, queue.drain(frame, Long.MAX_VALUE));
+        assertEquals(1, frame.getXDir(1));
+        assertEquals(-1, frame.getYDir(1));
+        assertEquals(0, frame.getXDir(0));
+
+        // Holding the same direction sends nothing
+        bots.steer(1, 1, -1);
+        assertEquals(0, queue.drain(frame, Long.MAX_VALUE));
+
+        // Reversing releases the old key and presses the new one
+        bots.steer(1, -1, -1);
+        assertEquals(2, queue.drain(frame, Long.MAX_VALUE));
+        assertEquals(-1, frame.getXDir(1));
+        assertEquals(-1, frame.getYDir(1));
+
+        bots.steer(1, 0, 0);
+        assertEquals(2, queue.drain(frame, Long.MAX_VALUE));
+        assertEquals(0, frame.getXDir(1));
+        assertEquals(0, frame.getYDir(1));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testIsAimedAt() {
+        // A new player heads right
+        final Player player = new Engine(42L).getPlayers()[0];
+
+        assertTrue(Arena.Bots.isAimedAt(player, 100, 0));
+        assertTrue(Arena.Bots.isAimedAt(player, 100, 10));
+        assertFalse(Arena.Bots.isAimedAt(player, 100, 100));
+        assertFalse(Arena.Bots.isAimedAt(player, -100, 0));
+        assertFalse(Arena.Bots.isAimedAt(player, 0, 100));
+        assertFalse(Arena.Bots.isAimedAt(player, 0, 0));
+    }
+}
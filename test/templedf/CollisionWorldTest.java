@@ -0,0 +1,47 @@
+package templedf;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollisionWorldTest {
+    private static final Rectangle BOUNDS = new Rectangle(0, 0, 800, 800);
+    private static final DragModel NO_DRAG = (x, y, xVel, yVel) -> new float[2];
+
+    @org.junit.jupiter.api.Test
+    void testForEachPair() {
+        CollisionWorld world = new CollisionWorld(50);
+        Player player = new Player(100, 100, 25, BOUNDS, NO_DRAG, Color.BLUE);
+        Ammo near = new Ammo(110, 100, 10, BOUNDS, NO_DRAG);
+        Ammo far = new Ammo(600, 600, 10, BOUNDS, NO_DRAG);
+        List<Sprite[]> pairs = new ArrayList<>();
+
+        world.add(player, 0);
+        world.add(near, 1);
+        world.add(far, 1);
+        world.update();
+        world.forEachPair((a, b) -> pairs.add(new Sprite[] {a, b}));
+
+        assertEquals(1, pairs.size());
+        assertSame(player, pairs.get(0)[0]);
+        assertSame(near, pairs.get(0)[1]);
+    }
+
+    @org.junit.jupiter.api.Test
+    void testPairSpanningCellsIsVisitedOnce() {
+        CollisionWorld world = new CollisionWorld(10);
+        Player player = new Player(100, 100, 25, BOUNDS, NO_DRAG, Color.BLUE);
+        Ammo ammo = new Ammo(100, 100, 10, BOUNDS, NO_DRAG);
+        int[] count = {0};
+
+        world.add(player, 0);
+        world.add(ammo, 1);
+        world.update();
+        world.forEachPair((a, b) -> count[0]++);
+
+        assertEquals(1, count[0]);
+    }
+}
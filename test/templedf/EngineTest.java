@@ -0,0 +1,205 @@
+package templedf;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EngineTest {
+    /**
+     * Input that has player 0 move right and player 1 move left, both shooting constantly.
+     */
+    private static final Input CHARGE = new Input() {
+        @Override
+        public int getXDir(int player) {
+            return player == 0 ? 1 : -1;
+        }
+
+        @Override
+        public int getYDir(int player) {
+            return 0;
+        }
+
+        @Override
+        public boolean isShooting(int player) {
+            return true;
+        }
+    };
+
+    @org.junit.jupiter.api.Test
+    void testDeterministic() {
+        Engine a = new Engine(1234L);
+        Engine b = new Engine(1234L);
+
+        for (int i = 0; i < 500; i++) {
+            a.tick(CHARGE);
+            b.tick(CHARGE);
+        }
+
+        assertEquals(a.getTick(), b.getTick());
+        assertEquals(a.isRoundOver(), b.isRoundOver());
+
+        for (int p = 0; p < a.getPlayers().length; p++) {
+            assertEquals(a.getScore(p), b.getScore(p));
+            assertEquals(a.getPlayers()[p].getX(), b.getPlayers()[p].getX());
+            assertEquals(a.getPlayers()[p].getY(), b.getPlayers()[p].getY());
+        }
+
+        for (int i = 0; i < a.getAmmo().length; i++) {
+            assertEquals(a.getAmmo()[i].getX(), b.getAmmo()[i].getX());
+            assertEquals(a.getAmmo()[i].getY(), b.getAmmo()[i].getY());
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testRoundOverStopsTicking() {
+        Engine engine = new Engine(1L);
+        // Player 0 stands still and shoots along its initial heading, straight at player 1
+        Input shoot = new Input() {
+            @Override
+            public int getXDir(int player) {
+                return 0;
+            }
+
+            @Override
+            public int getYDir(int player) {
+                return 0;
+            }
+
+            @Override
+            public boolean isShooting(int player) {
+                return player == 0;
+            }
+        };
+
+        engine.getPlayers()[0].load(engine.getAmmo()[0]);
+
+        while (!engine.isRoundOver() && (engine.getTick() < 1000L)) {
+            engine.tick(shoot);
+        }
+
+        assertTrue(engine.isRoundOver());
+        assertEquals(1, engine.getScore(0));
+        assertEquals(0, engine.getScore(1));
+
+        long tick = engine.getTick();
+
+        engine.tick(shoot);
+        assertEquals(tick, engine.getTick());
+        engine.restart();
+        assertFalse(engine.isRoundOver());
+    }
+
+    @org.junit.jupiter.api.Test
+    void testParallelMatchesSerial() {
+        Engine serial = new Engine(99L, 4000);
+        Engine parallel = new Engine(99L, 4000);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        parallel.setParallelism(pool, 8);
+
+        try {
+            for (int i = 0; i < 3000; i++) {
+                if (serial.isRoundOver()) {
+                    serial.restart();
+                    parallel.restart();
+                }
+
+                Input sweep = sweep(i);
+
+                serial.tick(sweep);
+                parallel.tick(sweep);
+                assertEquals(serial.isRoundOver(), parallel.isRoundOver());
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        for (int p = 0; p < serial.getPlayers().length; p++) {
+            assertEquals(serial.getScore(p), parallel.getScore(p));
+            assertEquals(serial.getPlayers()[p].getX(), parallel.getPlayers()[p].getX());
+            assertEquals(serial.getPlayers()[p].getY(), parallel.getPlayers()[p].getY());
+        }
+
+        for (int i = 0; i < serial.getAmmo().length; i++) {
+            assertEquals(serial.getAmmo()[i].getX(), parallel.getAmmo()[i].getX());
+            assertEquals(serial.getAmmo()[i].getY(), parallel.getAmmo()[i].getY());
+            assertEquals(serial.getAmmo()[i].isLive(), parallel.getAmmo()[i].isLive());
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testSweepAndPruneMatchesGrid() {
+        Engine grid = new Engine(7L, 1000);
+        Engine sap = new Engine(7L, 1000, new SweepAndPrune());
+
+        for (int i = 0; i < 3000; i++) {
+            if (grid.isRoundOver()) {
+                grid.restart();
+                sap.restart();
+            }
+
+            Input sweep = sweep(i);
+
+            grid.tick(sweep);
+            sap.tick(sweep);
+            assertEquals(grid.isRoundOver(), sap.isRoundOver());
+        }
+
+        for (int p = 0; p < grid.getPlayers().length; p++) {
+            assertEquals(grid.getScore(p), sap.getScore(p));
+            assertEquals(grid.getPlayers()[p].getX(), sap.getPlayers()[p].getX());
+            assertEquals(grid.getPlayers()[p].getY(), sap.getPlayers()[p].getY());
+        }
+
+        for (int i = 0; i < grid.getAmmo().length; i++) {
+            assertEquals(grid.getAmmo()[i].getX(), sap.getAmmo()[i].getX());
+            assertEquals(grid.getAmmo()[i].getY(), sap.getAmmo()[i].getY());
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testPlayerCount() {
+        Engine two = new Engine(3L);
+
+        assertEquals(200, two.getPlayers()[0].getX());
+        assertEquals(400, two.getPlayers()[0].getY());
+        assertEquals(600, two.getPlayers()[1].getX());
+        assertEquals(400, two.getPlayers()[1].getY());
+
+        Engine many = new Engine(3L, 10, new CollisionWorld(Engine.CELL_SIZE), 10, 4);
+
+        assertEquals(4, many.getPlayers().length);
+        assertEquals(400, many.getPlayers()[1].getX());
+        assertEquals(200, many.getPlayers()[1].getY());
+
+        for (int i = 0; i < 100; i++) {
+            many.tick(CHARGE);
+        }
+
+        assertEquals(100L, many.getTick());
+        assertThrows(IllegalArgumentException.class, () -> new Engine(3L, 10, new SweepAndPrune(), 10, 0));
+    }
+
+    /**
+     * Input that sweeps the players back and forth and shoots every so often, so that there are
+     * plenty of pickups and hits.
+     */
+    private static Input sweep(int tick) {
+        return new Input() {
+            @Override
+            public int getXDir(int player) {
+                return (tick / 150) % 2 == player ? 1 : -1;
+            }
+
+            @Override
+            public int getYDir(int player) {
+                return (tick / 40) % 3 - 1;
+            }
+
+            @Override
+            public boolean isShooting(int player) {
+                return tick % 20 == player;
+            }
+        };
+    }
+}
@@ -0,0 +1,61 @@
+package templedf;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameEventsTest {
+    @org.junit.jupiter.api.Test
+    void testHeadlessRoundsRecordEvents() throws Exception {
+        final Path file = Files.createTempFile("spheroids", ".jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("templedf.Tick");
+            recording.enable("templedf.Hit");
+            recording.enable("templedf.Load");
+            recording.enable("templedf.Shoot");
+            recording.start();
+            Headless.main(new String[] { "5", "42" });
+            recording.stop();
+            recording.dump(file);
+
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            long ticks = 0;
+            long loads = 0;
+            long shots = 0;
+            int maxLive = 0;
+
+            for (RecordedEvent event : events) {
+                switch (event.getEventType().getName()) {
+                    case "templedf.Tick":
+                        maxLive = Math.max(maxLive, event.getInt("liveAmmo"));
+                        assertTrue(event.getInt("movingSprites") >= 0);
+                        ticks += 1;
+                        break;
+                    case "templedf.Load":
+                        loads += 1;
+                        break;
+                    case "templedf.Shoot":
+                        assertTrue(event.getInt("player") >= 0);
+                        shots += 1;
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            assertTrue(ticks > 0);
+            assertTrue(loads > 0);
+            assertTrue(shots > 0);
+            assertTrue(shots <= loads);
+            assertTrue(maxLive > 0);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package templedf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+    @org.junit.jupiter.api.Test
+    void testPercentiles() {
+        final Histogram histogram = new Histogram();
+
+        for (long v = 1; v <= 100000; v++) {
+            histogram.record(v);
+        }
+
+        assertEquals(100000, histogram.getCount());
+        assertEquals(100000, histogram.getMax());
+        assertEquals(50000.5, histogram.getMean(), 1e-9);
+
+        for (double percentile : new double[] {1, 50, 90, 99, 99.9}) {
+            final double exact = percentile * 1000;
+
+            assertEquals(exact, histogram.getPercentile(percentile), exact * 0.07, "p" + percentile);
+        }
+
+        assertEquals(100000, histogram.getPercentile(100));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testBuckets() {
+        long last = -1;
+
+        // Every value falls in its bucket's range, and the buckets tile the number line
+        for (long v = 0; v < 1 << 20; v++) {
+            final int bucket = Histogram.bucket(v);
+
+            assertTrue(v <= Histogram.upperBound(bucket));
+            assertTrue((bucket == 0) || (v > Histogram.upperBound(bucket - 1)));
+            assertTrue(bucket >= last);
+            last = bucket;
+        }
+
+        assertEquals(Long.MAX_VALUE, Histogram.upperBound(Histogram.bucket(Long.MAX_VALUE)));
+    }
+}
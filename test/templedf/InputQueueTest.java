@@ -0,0 +1,82 @@
+package templedf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InputQueueTest {
+    @org.junit.jupiter.api.Test
+    void testTapWithinTickIsKept() {
+        InputQueue queue = new InputQueue(16);
+        InputFrame frame = new InputFrame(2);
+
+        queue.offer(1L, InputFrame.event(0, InputFrame.RIGHT, true));
+        queue.offer(2L, InputFrame.event(0, InputFrame.RIGHT, false));
+        queue.offer(3L, InputFrame.event(1, InputFrame.SHOOT, true));
+        queue.offer(4L, InputFrame.event(1, InputFrame.SHOOT, false));
+        queue.offer(5L, InputFrame.event(1, InputFrame.UP, true));
+
+        assertEquals(5, queue.drain(frame, 10L));
+        assertEquals(1, frame.getXDir(0));
+        assertTrue(frame.isShooting(1));
+        assertEquals(-1, frame.getYDir(1));
+
+        // The tap is over by the next tick, but the held key isn't
+        assertEquals(0, queue.drain(frame, 20L));
+        assertEquals(0, frame.getXDir(0));
+        assertFalse(frame.isShooting(1));
+        assertEquals(-1, frame.getYDir(1));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testLaterEventsWaitForNextTick() {
+        InputQueue queue = new InputQueue(4);
+        InputFrame frame = new InputFrame(1);
+
+        assertTrue(queue.offer(10L, InputFrame.event(0, InputFrame.LEFT, true)));
+        assertTrue(queue.offer(30L, InputFrame.event(0, InputFrame.LEFT, false)));
+        assertTrue(queue.offer(30L, InputFrame.event(0, InputFrame.DOWN, true)));
+        assertTrue(queue.offer(40L, InputFrame.event(0, InputFrame.DOWN, false)));
+        assertFalse(queue.offer(50L, InputFrame.event(0, InputFrame.SHOOT, true)));
+
+        assertEquals(1, queue.drain(frame, 20L));
+        assertEquals(-1, frame.getXDir(0));
+        assertEquals(0, frame.getYDir(0));
+        assertEquals(2, queue.drain(frame, 30L));
+        assertEquals(0, frame.getXDir(0));
+        assertEquals(1, frame.getYDir(0));
+        queue.clear();
+        assertEquals(0, queue.drain(frame, 50L));
+        assertEquals(1, frame.getYDir(0));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testEventsCrossThreads() throws InterruptedException {
+        InputQueue queue = new InputQueue(64);
+        int count = 10000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                while (!queue.offer(i, InputFrame.event(0, i % 2 == 0 ? InputFrame.RIGHT : InputFrame.LEFT, true))) {
+                    Thread.yield();
+                }
+            }
+        });
+        InputFrame frame = new InputFrame(1);
+        int drained = 0;
+
+        producer.start();
+
+        while (drained < count) {
+            frame.reset();
+
+            final int events = queue.drain(frame, Long.MAX_VALUE);
+
+            if (events == 0) {
+                Thread.yield();
+            }
+
+            drained += events;
+        }
+
+        producer.join();
+        assertEquals(count, drained);
+    }
+}
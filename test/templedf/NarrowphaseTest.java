@@ -0,0 +1,233 @@
+package templedf;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NarrowphaseTest {
+    private static final Rectangle BOUNDS = new Rectangle(0, 0, 800, 800);
+    private static final DragModel NO_DRAG = (x, y, xVel, yVel) -> new float[2];
+    // How two shapes meet according to exact arithmetic
+    private static final int SEPARATE = 0;
+    private static final int TOUCHING = 1;
+    private static final int OVERLAPPING = 2;
+
+    @org.junit.jupiter.api.Test
+    void testBatchMatchesPairwise() {
+        Random rand = new Random(42);
+        Player player = new Player(400, 400, 25, BOUNDS, NO_DRAG, Color.BLUE);
+        Ammo[] ammo = new Ammo[101];
+        float[] x = new float[ammo.length];
+        float[] y = new float[ammo.length];
+        boolean[] hits = new boolean[ammo.length];
+        int expected = 0;
+
+        for (int i = 0; i < ammo.length; i++) {
+            ammo[i] = new Ammo(380 + rand.nextInt(40), 380 + rand.nextInt(40), 10, BOUNDS, NO_DRAG);
+            x[i] = ammo[i].getX();
+            y[i] = ammo[i].getY();
+
+            if (player.intersects(ammo[i])) {
+                expected += 1;
+            }
+        }
+
+        assertEquals(expected, Narrowphase.get().overlaps(player.shape, 400, 400, ammo[0].shape, x, y, ammo.length, hits));
+
+        for (int i = 0; i < ammo.length; i++) {
+            assertEquals(player.intersects(ammo[i]), hits[i]);
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testBatchCountsTiers() {
+        Random rand = new Random(5);
+        Player player = new Player(400, 400, 25, BOUNDS, NO_DRAG, Color.BLUE);
+        Ammo ammo = new Ammo(400, 400, 10, BOUNDS, NO_DRAG);
+        Shape.Pair pair = player.shape.pair(ammo.shape);
+        float[] x = new float[203];
+        float[] y = new float[x.length];
+        boolean[] hits = new boolean[x.length];
+        int[] expected = new int[Shape.SAT_REJECT + 1];
+
+        for (int i = 0; i < x.length; i++) {
+            x[i] = 340 + rand.nextInt(121);
+            y[i] = 340 + rand.nextInt(121);
+            expected[pair.test(x[i] - 400, y[i] - 400)] += 1;
+        }
+
+        for (Narrowphase narrowphase : new Narrowphase[] {new Narrowphase(), Narrowphase.get()}) {
+            int[] results = new int[Shape.SAT_REJECT + 1];
+
+            assertEquals(expected[Shape.OVERLAP], narrowphase.test(pair, 400, 400, x, y, x.length, hits, results));
+            assertArrayEquals(expected, results);
+
+            for (int i = 0; i < x.length; i++) {
+                assertEquals(pair.overlaps(x[i] - 400, y[i] - 400), hits[i]);
+            }
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testTiersMatchSat() {
+        Random rand = new Random(7);
+        Player player = new Player(400, 400, 25, BOUNDS, NO_DRAG, Color.BLUE);
+        Ammo ammo = new Ammo(400, 400, 10, BOUNDS, NO_DRAG);
+        Shape.Pair pair = player.shape.pair(ammo.shape);
+        int[] tiers = new int[Shape.SAT_REJECT + 1];
+
+        for (int i = 0; i < 10000; i++) {
+            final float dx = rand.nextInt(121) - 60;
+            final float dy = rand.nextInt(121) - 60;
+            final int result = pair.test(dx, dy);
+
+            assertEquals(pair.satOverlaps(dx, dy), result == Shape.OVERLAP);
+            tiers[result] += 1;
+
+            final float dx1 = dx + rand.nextInt(81) - 40;
+            final float dy1 = dy + rand.nextInt(81) - 40;
+
+            assertEquals(pair.satTimeOfImpact(dx, dy, dx1, dy1), pair.timeOfImpact(dx, dy, dx1, dy1));
+        }
+
+        // Every tier decides some of the pairs, and most never get as far as SAT
+        for (int tier : tiers) {
+            assertTrue(tier > 0);
+        }
+
+        assertTrue(tiers[Shape.BOX_REJECT] + tiers[Shape.CIRCLE_REJECT] > tiers[Shape.SAT_REJECT]);
+    }
+
+    @org.junit.jupiter.api.Test
+    void testMatchesSlopeSat() {
+        Random rand = new Random(3);
+        Point[][] shapes = new Point[12][];
+
+        for (int i = 0; i < shapes.length; i++) {
+            final int span = 2 + rand.nextInt(20);
+
+            switch (i % 3) {
+                case 0:
+                    // A diamond, like a player
+                    shapes[i] = new Point[] {new Point(span, 0), new Point(0, span), new Point(-span, 0), new Point(0, -span)};
+                    break;
+                case 1:
+                    // A square, like ammo
+                    shapes[i] = new Point[] {new Point(span, span), new Point(-span, span), new Point(-span, -span), new Point(span, -span)};
+                    break;
+                default:
+                    // A parallelogram. The slope test only checks the side of the axis the other
+                    // center is on, which is only exact for shapes symmetric about their center.
+                    final int skewX = rand.nextInt(span);
+                    final int skewY = rand.nextInt(span);
+
+                    shapes[i] = new Point[] {new Point(span, skewY), new Point(-skewX, span),
+                            new Point(-span, -skewY), new Point(skewX, -span)};
+                    break;
+            }
+        }
+
+        int touching = 0;
+
+        for (int n = 0; n < 200000; n++) {
+            final Point[] a = shapes[rand.nextInt(shapes.length)];
+            final Point[] b = shapes[rand.nextInt(shapes.length)];
+            final int dx = rand.nextInt(81) - 40;
+            final int dy = rand.nextInt(81) - 40;
+            final int exact = exactSat(a, b, dx, dy);
+
+            // Shapes that exactly touch are a coin toss for either float implementation
+            if (exact == TOUCHING) {
+                touching += 1;
+                continue;
+            }
+
+            assertEquals(exact == OVERLAPPING, slopeOverlaps(a, b, dx, dy) && slopeOverlaps(b, a, -dx, -dy));
+            assertEquals(exact == OVERLAPPING, Shape.of(a).pair(Shape.of(b)).overlaps(dx, dy),
+                    () -> java.util.Arrays.toString(a) + " " + java.util.Arrays.toString(b) + " at " + dx + ", " + dy);
+        }
+
+        assertTrue(touching < 10000);
+    }
+
+    /**
+     * SAT in exact integer arithmetic, on the unnormalized side normals of both shapes.
+     */
+    private static int exactSat(Point[] a, Point[] b, int dx, int dy) {
+        int result = OVERLAPPING;
+
+        for (Point[] sides : new Point[][] {a, b}) {
+            for (int i = 0; i < sides.length; i++) {
+                final long x = sides[i].y - sides[(i + 1) % sides.length].y;
+                final long y = sides[(i + 1) % sides.length].x - sides[i].x;
+                final long dist = dx * x + dy * y;
+                long aMin = Long.MAX_VALUE;
+                long aMax = Long.MIN_VALUE;
+                long bMin = Long.MAX_VALUE;
+                long bMax = Long.MIN_VALUE;
+
+                for (Point v : a) {
+                    aMin = Math.min(aMin, v.x * x + v.y * y);
+                    aMax = Math.max(aMax, v.x * x + v.y * y);
+                }
+
+                for (Point v : b) {
+                    bMin = Math.min(bMin, dist + v.x * x + v.y * y);
+                    bMax = Math.max(bMax, dist + v.x * x + v.y * y);
+                }
+
+                if ((bMin > aMax) || (bMax < aMin)) {
+                    return SEPARATE;
+                } else if ((bMin == aMax) || (bMax == aMin)) {
+                    result = TOUCHING;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * The SAT test the shape tables replaced: the axes are b's side normals as slopes, so a
+     * vertical axis has an infinite slope, and a is projected onto them on every call.
+     * @param dx the x distance from the center of a to the center of b
+     * @param dy the y distance from the center of a to the center of b
+     */
+    private static boolean slopeOverlaps(Point[] a, Point[] b, int dx, int dy) {
+        for (int i = 0; i < b.length; i++) {
+            final Point v1 = b[i];
+            final Point v2 = b[(i + 1) % b.length];
+            final float slope = (float)(v2.x - v1.x) / (v1.y - v2.y);
+            final boolean vertical = (slope == Float.POSITIVE_INFINITY) || (slope == Float.NEGATIVE_INFINITY);
+            final float magnitude = (float)Math.abs(Math.sqrt(Math.pow(slope, 2) + 1));
+            final float centerDist = vertical ? dy : ((slope * dy) + dx) / magnitude;
+            float bMin = Float.MAX_VALUE;
+            float bMax = -Float.MAX_VALUE;
+            float min = Float.MAX_VALUE;
+            float max = -Float.MAX_VALUE;
+
+            for (Point v : b) {
+                final float projection = vertical ? v.y : ((slope * v.y) + v.x) / magnitude;
+
+                bMin = Math.min(bMin, projection);
+                bMax = Math.max(bMax, projection);
+            }
+
+            for (Point v : a) {
+                final float projection = vertical ? v.y : ((slope * v.y) + v.x) / magnitude;
+
+                min = Math.min(min, projection);
+                max = Math.max(max, projection);
+            }
+
+            if (((centerDist >= 0) && (centerDist > max - bMin)) || ((centerDist < 0) && (centerDist < min - bMax))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
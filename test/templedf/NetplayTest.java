@@ -0,0 +1,145 @@
+package templedf;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NetplayTest {
+    private static final int TICKS = 400;
+
+    @org.junit.jupiter.api.Test
+    void testLockstepOverLossyLoopback() throws Exception {
+        DatagramChannel a = DatagramChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        DatagramChannel b = DatagramChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Netplay netA = new Netplay(a, b.getLocalAddress(), 0, 4);
+        Netplay netB = new Netplay(b, a.getLocalAddress(), 1, 4);
+        Engine engineA = new Engine(3L, 100);
+        Engine engineB = new Engine(3L, 100);
+
+        netA.simulate(0.25, 10L, new Random(1L));
+        netB.simulate(0.25, 10L, new Random(2L));
+
+        Peer peerA = new Peer(netA, engineA);
+        Peer peerB = new Peer(netB, engineB);
+        Thread thread = new Thread(peerB);
+
+        thread.start();
+        peerA.run();
+        thread.join();
+
+        try {
+            assertNull(peerA.error);
+            assertNull(peerB.error);
+            assertEquals(TICKS, netA.getTick());
+            assertEquals(TICKS, netB.getTick());
+            assertTrue(netA.getPacketsDropped() > 0);
+            assertEquals(engineA.getTick(), engineB.getTick());
+
+            for (int p = 0; p < 2; p++) {
+                assertEquals(engineA.getScore(p), engineB.getScore(p));
+                assertEquals(engineA.getPlayers()[p].getX(), engineB.getPlayers()[p].getX());
+                assertEquals(engineA.getPlayers()[p].getY(), engineB.getPlayers()[p].getY());
+            }
+
+            for (int i = 0; i < engineA.getAmmo().length; i++) {
+                assertEquals(engineA.getAmmo()[i].getX(), engineB.getAmmo()[i].getX());
+                assertEquals(engineA.getAmmo()[i].getY(), engineB.getAmmo()[i].getY());
+            }
+        } finally {
+            netA.close();
+            netB.close();
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testMalformedPacketsAreDropped() throws Exception {
+        DatagramChannel a = DatagramChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        DatagramChannel b = DatagramChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Netplay netA = new Netplay(a, b.getLocalAddress(), 0, 4);
+        Netplay netB = new Netplay(b, a.getLocalAddress(), 1, 4);
+        ByteBuffer packet = ByteBuffer.allocate(64);
+
+        try {
+            // Too short for the header
+            assertFalse(netA.readPacket(ByteBuffer.wrap(new byte[] {0, 0, 0})));
+            // Half a run
+            assertFalse(netA.readPacket(packet.clear().putInt(0).putInt(0).putInt(Shape.ANGLES).putShort((short)1)
+                    .put((byte)0).flip()));
+            // Runs that don't add up to the count
+            assertFalse(netA.readPacket(packet.clear().putInt(0).putInt(0).putInt(Shape.ANGLES).putShort((short)9)
+                    .put((byte)0).put((byte)4).flip()));
+            // A peer whose sprites turn differently
+            assertThrows(IOException.class, () -> netA.readPacket(packet.clear().putInt(0).putInt(0)
+                    .putInt(Shape.ANGLES + 1).putShort((short)0).flip()));
+            netB.writePacket(packet.clear());
+            assertTrue(netA.readPacket(packet.flip()));
+
+            // A junk datagram from the peer doesn't stop the game
+            b.send(ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5}), a.getLocalAddress());
+            netB.writePacket(packet.clear());
+            b.send(packet.flip(), a.getLocalAddress());
+            Thread.sleep(50L);
+            netA.tick(new Engine(3L, 100), new InputFrame(2));
+            assertEquals(1, netA.getPacketsMalformed());
+            assertEquals(1, netA.getPacketsReceived());
+        } finally {
+            netA.close();
+            netB.close();
+        }
+    }
+
+    /**
+     * One machine: it plays its player with scripted input until the last tick.
+     */
+    private static class Peer implements Runnable {
+        private final Netplay net;
+        private final Engine engine;
+        private Exception error = null;
+
+        private Peer(Netplay net, Engine engine) {
+            this.net = net;
+            this.engine = engine;
+        }
+
+        @Override
+        public void run() {
+            Input input = new Input() {
+                @Override
+                public int getXDir(int player) {
+                    return (net.getTick() / 50) % 2 == player ? 1 : -1;
+                }
+
+                @Override
+                public int getYDir(int player) {
+                    return (net.getTick() / 30) % 3 - 1;
+                }
+
+                @Override
+                public boolean isShooting(int player) {
+                    return net.getTick() % 40 == 0;
+                }
+            };
+
+            try {
+                while (net.getTick() < TICKS) {
+                    if (engine.isRoundOver()) {
+                        engine.restart();
+                    }
+
+                    if (!net.tick(engine, input)) {
+                        net.await(5L);
+                    }
+                }
+
+                net.finish(2000L);
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package templedf;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayTest {
+    @org.junit.jupiter.api.Test
+    void testReplayMatchesRecording() throws Exception {
+        final Path file = Files.createTempFile("spheroids", ".replay");
+
+        try {
+            Headless.main(new String[] { "20", "42", file.toString() });
+
+            final ReplayPlayer player = new ReplayPlayer(file);
+            final Engine recorded = new Engine(42L);
+
+            assertTrue(player.getTicks() > 0);
+            assertTrue(player.play());
+            assertEquals(player.getTicks(), player.getEngine().getTick());
+            // Every round but the first starts with a restart event: the count and the type
+            assertEquals(Files.size(file), ReplayRecorder.HEADER + recorded.getAmmo().length * 4 + player.getTicks() * 2 +
+                    19 * 5 + 2 * 4);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testReplaysEventsAndWorldSize() throws Exception {
+        final Path file = Files.createTempFile("spheroids", ".replay");
+
+        try {
+            final Engine engine = new Engine(9L, 10, new CollisionWorld(Engine.CELL_SIZE), 20, 3);
+            final ReplayRecorder recorder = new ReplayRecorder(file, engine);
+            final InputFrame input = new InputFrame(3);
+            final java.util.Random rand = new java.util.Random(9L);
+            int spawns = 0;
+            int despawns = 0;
+
+            for (int t = 0; t < 1500; t++) {
+                if ((t % 40 == 0) && (recorder.spawn(rand.nextInt(50, 750), rand.nextInt(50, 750)) != null)) {
+                    spawns += 1;
+                }
+
+                if ((t % 70 == 0) && recorder.despawn(engine.getAmmo()[rand.nextInt(engine.getAmmoPool().size())])) {
+                    despawns += 1;
+                }
+
+                for (int p = 0; p < 3; p++) {
+                    input.set(p, (byte)(rand.nextInt(3) | (rand.nextInt(3) << 2) | (rand.nextInt(4) == 0 ? 0x10 : 0)));
+                }
+
+                engine.tick(recorder.record(input));
+
+                if (engine.isRoundOver()) {
+                    recorder.restart();
+                }
+            }
+
+            recorder.close();
+            assertTrue(spawns > 0);
+            assertTrue(despawns > 0);
+
+            final ReplayPlayer player = new ReplayPlayer(file);
+
+            assertEquals(3, player.getEngine().getPlayers().length);
+            assertEquals(20, player.getEngine().getAmmoPool().getCapacity());
+            assertTrue(player.play());
+            assertArrayEquals(state(engine), state(player.getEngine()));
+
+            // An ammo capacity less than the starting ammo can't be from a real recording
+            final byte[] replay = Files.readAllBytes(file);
+
+            java.nio.ByteBuffer.wrap(replay).putInt(ReplayRecorder.EVENT_BYTES_OFFSET - 4, 4);
+            Files.write(file, replay);
+            assertThrows(java.io.IOException.class, () -> new ReplayPlayer(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static byte[] state(Engine engine) {
+        final java.nio.ByteBuffer buffer = java.nio.ByteBuffer.allocate(engine.getStateSize());
+
+        engine.save(buffer);
+
+        return buffer.array();
+    }
+
+    @org.junit.jupiter.api.Test
+    void testRejectsOtherFiles() throws Exception {
+        final Path file = Files.createTempFile("spheroids", ".replay");
+
+        try {
+            Files.write(file, new byte[64]);
+            assertThrows(java.io.IOException.class, () -> new ReplayPlayer(file));
+            Files.write(file, new byte[4]);
+            assertThrows(java.io.IOException.class, () -> new ReplayPlayer(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testRejectsTruncatedReplay() throws Exception {
+        final Path file = Files.createTempFile("spheroids", ".replay");
+
+        try {
+            Headless.main(new String[] { "2", "42", file.toString() });
+
+            final byte[] replay = Files.readAllBytes(file);
+
+            Files.write(file, java.util.Arrays.copyOf(replay, replay.length - 3));
+            assertThrows(java.io.IOException.class, () -> new ReplayPlayer(file));
+            Files.write(file, java.util.Arrays.copyOf(replay, ReplayRecorder.HEADER + 2));
+            assertThrows(java.io.IOException.class, () -> new ReplayPlayer(file));
+
+            // Recorded with sprites that turn to a different number of angles
+            java.nio.ByteBuffer.wrap(replay).putInt(ReplayRecorder.ANGLES_OFFSET, Shape.ANGLES * 2);
+            Files.write(file, replay);
+            assertThrows(java.io.IOException.class, () -> new ReplayPlayer(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package templedf;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollbackTest {
+    private static final int TICKS = 20000;
+    private static final int CORRECTED = TICKS - 400;
+
+    /**
+     * Random controls for every player and tick, holding each direction for a while and
+     * shooting now and then, like the headless bot.
+     */
+    private static byte[][] randomInputs(long seed) {
+        final Random rand = new Random(seed);
+        final byte[][] inputs = new byte[TICKS][2];
+        final int[] direction = new int[2];
+        final int[] hold = new int[2];
+
+        for (int t = 0; t < TICKS; t++) {
+            for (int p = 0; p < 2; p++) {
+                if (hold[p]-- <= 0) {
+                    direction[p] = rand.nextInt(3) | (rand.nextInt(3) << 2);
+                    hold[p] = rand.nextInt(10, 100);
+                }
+
+                inputs[t][p] = (byte)(direction[p] | (rand.nextInt(50) == 0 ? 0x10 : 0));
+            }
+        }
+
+        return inputs;
+    }
+
+    private static byte[] state(Engine engine) {
+        final ByteBuffer buffer = ByteBuffer.allocate(engine.getStateSize());
+
+        engine.save(buffer);
+        assertFalse(buffer.hasRemaining());
+
+        return buffer.array();
+    }
+
+    /**
+     * Play every tick, restarting whenever a round is over.
+     */
+    private static Engine play(byte[][] inputs) {
+        final Engine engine = new Engine(7L);
+        final InputFrame frame = new InputFrame(2);
+
+        for (byte[] tick : inputs) {
+            if (engine.isRoundOver()) {
+                engine.restart();
+            }
+
+            frame.set(0, tick[0]);
+            frame.set(1, tick[1]);
+            engine.tick(frame);
+        }
+
+        return engine;
+    }
+
+    @org.junit.jupiter.api.Test
+    void testSaveAndRestore() {
+        final Engine engine = play(randomInputs(1L));
+        final byte[] before = state(engine);
+        final Engine other = new Engine(7L);
+
+        other.restore(ByteBuffer.wrap(before));
+        assertArrayEquals(before, state(other));
+        assertEquals(engine.getTick(), other.getTick());
+
+        for (int p = 0; p < 2; p++) {
+            assertEquals(engine.getScore(p), other.getScore(p));
+            assertEquals(engine.getPlayers()[p].getX(), other.getPlayers()[p].getX());
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testRollbackWithCorrectedInput() {
+        final byte[][] predicted = randomInputs(1L);
+        final byte[][] actual = randomInputs(1L);
+        final InputFrame frame = new InputFrame(2);
+        final Engine engine = new Engine(7L);
+        final Rollback rollback = new Rollback(engine, 600);
+
+        // Player 1's real controls turn out to be different for a stretch
+        for (int t = CORRECTED; t < CORRECTED + 100; t++) {
+            actual[t][1] = predicted[t][0];
+        }
+
+        for (int t = 0; t < TICKS; t++) {
+            frame.set(0, predicted[t][0]);
+            frame.set(1, predicted[t][1]);
+            rollback.tick(frame);
+        }
+
+        assertArrayEquals(state(play(predicted)), state(engine));
+        assertTrue(engine.getScore(0) + engine.getScore(1) > 0, "no round ended");
+
+        for (int t = CORRECTED; t < CORRECTED + 100; t++) {
+            frame.set(1, actual[t][1]);
+            rollback.setInput(t, 1, frame);
+        }
+
+        rollback.rollback(CORRECTED);
+        assertEquals(TICKS, rollback.getTick());
+        assertArrayEquals(state(play(actual)), state(engine));
+        assertFalse(Arrays.equals(state(play(predicted)), state(engine)));
+
+        // Rolling back without any corrections changes nothing
+        rollback.rollback(rollback.getOldestTick());
+        assertArrayEquals(state(play(actual)), state(engine));
+        assertThrows(IllegalArgumentException.class, () -> rollback.rollback(rollback.getOldestTick() - 1));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testCorrectionChangesHits() {
+        final byte[][] predicted = randomInputs(1L);
+        final int predictedHits = hits(play(predicted));
+        byte[][] actual = null;
+
+        // Find a correction to player 1's controls that changes how many hits there are
+        for (long seed = 2L; actual == null; seed++) {
+            final byte[][] candidate = randomInputs(1L);
+            final byte[][] other = randomInputs(seed);
+
+            for (int t = CORRECTED; t < CORRECTED + 100; t++) {
+                candidate[t][1] = other[t][1];
+            }
+
+            if (hits(play(candidate)) != predictedHits) {
+                actual = candidate;
+            }
+        }
+
+        // Going from the prediction to the correction adds or removes a hit, and going back
+        // does the opposite
+        assertRollsBackTo(predicted, actual);
+        assertRollsBackTo(actual, predicted);
+    }
+
+    private static int hits(Engine engine) {
+        return engine.getScore(0) + engine.getScore(1);
+    }
+
+    private static void assertRollsBackTo(byte[][] predicted, byte[][] actual) {
+        final InputFrame frame = new InputFrame(2);
+        final Engine engine = new Engine(7L);
+        final Rollback rollback = new Rollback(engine, 600);
+
+        for (int t = 0; t < TICKS; t++) {
+            frame.set(0, predicted[t][0]);
+            frame.set(1, predicted[t][1]);
+            rollback.tick(frame);
+        }
+
+        for (int t = CORRECTED; t < CORRECTED + 100; t++) {
+            frame.set(1, actual[t][1]);
+            rollback.setInput(t, 1, frame);
+        }
+
+        rollback.rollback(CORRECTED);
+        assertEquals(TICKS, engine.getTick());
+        assertEquals(hits(play(actual)), hits(engine));
+        assertArrayEquals(state(play(actual)), state(engine));
+    }
+}
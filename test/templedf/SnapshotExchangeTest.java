@@ -0,0 +1,101 @@
+package templedf;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotExchangeTest {
+    @org.junit.jupiter.api.Test
+    void testLatestMatchesEngine() {
+        Engine engine = new Engine(5L);
+        SnapshotExchange exchange = new SnapshotExchange(engine);
+
+        assertEquals(0L, exchange.latest().getTick());
+
+        for (int i = 0; i < 50; i++) {
+            engine.tick(new InputFrame(2));
+            engine.snapshot(exchange.back());
+            exchange.publish();
+        }
+
+        Snapshot snapshot = exchange.latest();
+
+        assertEquals(engine.getTick(), snapshot.getTick());
+        assertSame(snapshot, exchange.latest());
+
+        for (int a = 0; a < engine.getAmmo().length; a++) {
+            assertEquals(engine.getAmmo()[a].getX(), snapshot.ammoX[a]);
+            assertEquals(engine.getAmmo()[a].getY(), snapshot.ammoY[a]);
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testLastPositionsInterpolate() {
+        Engine engine = new Engine(5L);
+        Snapshot snapshot = new Snapshot(engine);
+        InputFrame frame = new InputFrame(2);
+        Player player = engine.getPlayers()[0];
+
+        frame.apply(InputFrame.event(0, InputFrame.RIGHT, true));
+
+        for (int i = 0; i < 10; i++) {
+            engine.tick(frame);
+        }
+
+        final int before = player.getX();
+
+        engine.tick(frame);
+        engine.snapshot(snapshot);
+
+        assertEquals(before, snapshot.lastPlayerX[0]);
+        assertEquals(player.getX(), snapshot.playerX[0]);
+        assertTrue(snapshot.playerX[0] > snapshot.lastPlayerX[0]);
+        assertEquals(snapshot.lastPlayerX[0], Snapshot.lerp(snapshot.lastPlayerX[0], snapshot.playerX[0], 0f));
+        assertEquals(snapshot.playerX[0], Snapshot.lerp(snapshot.lastPlayerX[0], snapshot.playerX[0], 1f));
+        assertEquals(15, Snapshot.lerp(10, 20, 0.5f));
+
+        // Ammo at rest doesn't move between the start and the end of the tick
+        for (int a = 0; a < snapshot.ammoCount; a++) {
+            if (engine.getAmmo()[a].getShooter() == null) {
+                assertEquals(snapshot.ammoX[a], snapshot.lastAmmoX[a]);
+                assertEquals(snapshot.ammoY[a], snapshot.lastAmmoY[a]);
+            }
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testReaderNeverSeesPartialSnapshot() throws InterruptedException {
+        Engine engine = new Engine(5L, 1000);
+        SnapshotExchange exchange = new SnapshotExchange(engine);
+        int publishes = 200000;
+        // The writer fills every field of a snapshot with the same value
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i <= publishes; i++) {
+                Snapshot snapshot = exchange.back();
+
+                snapshot.tick = i;
+                Arrays.fill(snapshot.ammoX, i);
+                Arrays.fill(snapshot.ammoY, i);
+                exchange.publish();
+            }
+        });
+        long last = 0L;
+
+        writer.start();
+
+        while (last < publishes) {
+            Snapshot snapshot = exchange.latest();
+
+            assertTrue(snapshot.tick >= last);
+
+            for (int a = 0; a < snapshot.ammoX.length; a++) {
+                assertEquals(snapshot.tick, snapshot.ammoX[a]);
+                assertEquals(snapshot.tick, snapshot.ammoY[a]);
+            }
+
+            last = snapshot.tick;
+        }
+
+        writer.join();
+    }
+}
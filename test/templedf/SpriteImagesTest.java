@@ -0,0 +1,53 @@
+package templedf;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpriteImagesTest {
+    private static final Rectangle BOUNDS = new Rectangle(0, 0, 800, 800);
+    private static final DragModel NO_DRAG = (x, y, xVel, yVel) -> new float[2];
+
+    @org.junit.jupiter.api.Test
+    void testMatchesPolygonFill() {
+        Sprite[] sprites = {
+                new Player(40, 40, 25, BOUNDS, NO_DRAG, Color.BLUE),
+                new Player(61, 17, 25, BOUNDS, NO_DRAG, Color.RED),
+                new Ammo(20, 70, 10, BOUNDS, NO_DRAG),
+                new Ammo(75, 73, 10, BOUNDS, NO_DRAG)
+        };
+        Color[] colors = {Color.BLUE, Color.RED, Color.GRAY, Color.GRAY};
+        BufferedImage expected = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+        BufferedImage actual = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+        Graphics e = expected.getGraphics();
+        Graphics a = actual.getGraphics();
+
+        e.setColor(Color.WHITE);
+        e.fillRect(0, 0, 100, 100);
+        a.setColor(Color.WHITE);
+        a.fillRect(0, 0, 100, 100);
+
+        for (int i = 0; i < sprites.length; i++) {
+            int[] xPoints = new int[sprites[i].vertices.length];
+            int[] yPoints = new int[sprites[i].vertices.length];
+
+            for (int v = 0; v < xPoints.length; v++) {
+                xPoints[v] = sprites[i].vertices[v].x + sprites[i].getX();
+                yPoints[v] = sprites[i].vertices[v].y + sprites[i].getY();
+            }
+
+            e.setColor(colors[i]);
+            e.fillPolygon(xPoints, yPoints, xPoints.length);
+            sprites[i].paint(a);
+        }
+
+        for (int y = 0; y < 100; y++) {
+            for (int x = 0; x < 100; x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), x + "," + y);
+            }
+        }
+    }
+}
@@ -1,22 +1,97 @@
 package templedf;
 
-import java.awt.Graphics;
+import java.awt.Color;
 import java.awt.Point;
 import java.awt.Rectangle;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class SpriteTest {
+    private static final Rectangle BOUNDS = new Rectangle(0, 0, 800, 800);
+    private static final DragModel NO_DRAG = (x, y, xVel, yVel) -> new float[2];
+
     @org.junit.jupiter.api.Test
-    void testGetRegions() {
-        Sprite s = new Sprite(400, 400, new Point[]{new Point(-10,10), new Point(10, 10), new Point(10, -10), new Point(-10, -10)}, new Rectangle(0, 0, 800, 800), new DragModel() {
-            @Override
-            public float[] drag(int x, int y, float xVel, float yVel) {
-                return new float[0];
-            }
-        }) {
-            @Override
-            public void paint(Graphics g) {}
-        };
+    void testSweptIntersects() {
+        Player player = new Player(120, 400, 25, BOUNDS, NO_DRAG, Color.BLUE);
+        Ammo ammo = new Ammo(90, 400, 10, BOUNDS, NO_DRAG);
+        PhysicsWorld world = new PhysicsWorld(NO_DRAG, 2);
+
+        world.add(player);
+        world.add(ammo);
+        ammo.shoot(60f, 0f);
+        world.step(0, 2);
+
+        // The ammo jumped clean over the player
+        assertEquals(150, ammo.getX());
+        assertFalse(ammo.intersects(player));
+        assertTrue(ammo.sweptIntersects(player));
+
+        world.step(0, 2);
+        assertFalse(ammo.sweptIntersects(player));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testSweptIntersectsAcrossBounce() {
+        Player player = new Player(780, 400, 25, BOUNDS, NO_DRAG, Color.BLUE);
+        Ammo ammo = new Ammo(740, 400, 10, BOUNDS, NO_DRAG);
+        Ammo miss = new Ammo(740, 300, 10, BOUNDS, NO_DRAG);
+        PhysicsWorld world = new PhysicsWorld(NO_DRAG, 3);
+
+        world.add(player);
+        world.add(ammo);
+        world.add(miss);
+        ammo.shoot(100f, 0f);
+        miss.shoot(100f, 0f);
+        world.step(0, 3);
+
+        // The ammo passed the player, bounced off the wall and passed it again on the way back
+        assertEquals(760, ammo.getX());
+        assertEquals(-100f, ammo.getXVelocity());
+        assertFalse(ammo.intersects(player));
+        assertTrue(ammo.sweptIntersects(player));
+        assertFalse(miss.sweptIntersects(player));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testRotate() {
+        Shape shape = Shape.of(new Point[] {new Point(10, 0), new Point(0, 5), new Point(-10, 0), new Point(0, -5)});
+        Shape quarter = shape.rotate(Shape.ANGLES / 4);
+
+        assertSame(shape, shape.rotate(0));
+        assertSame(shape, shape.rotate(Shape.ANGLES));
+        assertSame(quarter, shape.rotate(Shape.ANGLES / 4 - Shape.ANGLES));
+        assertSame(quarter, Shape.of(new Point[] {new Point(0, 10), new Point(-5, 0), new Point(0, -10), new Point(5, 0)}));
+        assertEquals(-5, quarter.minX);
+        assertEquals(5, quarter.maxX);
+        assertEquals(-10, quarter.minY);
+        assertEquals(10, quarter.maxY);
+        assertEquals(shape.getRadius(), quarter.getRadius());
+    }
+
+    @org.junit.jupiter.api.Test
+    void testAngle() {
+        assertEquals(0, Shape.angle(1f, 0f));
+        assertEquals(Shape.ANGLES / 4, Shape.angle(0f, 3f));
+        assertEquals(Shape.ANGLES / 2, Shape.angle(-2f, 0f));
+        assertEquals(Shape.ANGLES * 3 / 4, Shape.angle(0f, -1f));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testPlayerFacesHeading() {
+        Player player = new Player(400, 400, 25, BOUNDS, NO_DRAG, Color.BLUE);
+        Player other = new Player(200, 200, 25, BOUNDS, NO_DRAG, Color.RED);
+        final int angle = Shape.angle(1f, 2f);
+
+        assertEquals(0, player.getAngle());
+        player.incrementVelocity(1f, 2f);
+        player.move();
+        assertEquals(angle, player.getAngle());
+        assertSame(player.getShape(angle), player.shape);
+        // Players of the same size share their rotations
+        assertSame(player.shape, other.getShape(angle));
+
+        // Stopping doesn't turn the player back
+        player.reset();
+        assertEquals(angle, player.getAngle());
     }
-}
\ No newline at end of file
+}
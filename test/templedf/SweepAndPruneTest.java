@@ -0,0 +1,87 @@
+package templedf;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SweepAndPruneTest {
+    private static final Rectangle BOUNDS = new Rectangle(0, 0, 800, 800);
+    private static final DragModel NO_DRAG = (x, y, xVel, yVel) -> new float[2];
+
+    @org.junit.jupiter.api.Test
+    void testPairsFollowMovement() {
+        SweepAndPrune world = new SweepAndPrune();
+        Random rand = new Random(42L);
+        Sprite[] sprites = new Sprite[60];
+
+        for (int i = 0; i < sprites.length; i++) {
+            sprites[i] = (i % 3 == 0) ?
+                    new Player(rand.nextInt(800), rand.nextInt(800), 25, BOUNDS, NO_DRAG, Color.BLUE) :
+                    new Ammo(rand.nextInt(800), rand.nextInt(800), 10, BOUNDS, NO_DRAG);
+            world.add(sprites[i], i % 3 == 0 ? 0 : 1);
+        }
+
+        for (int step = 0; step < 200; step++) {
+            world.update();
+            assertEquals(expected(sprites), actual(world));
+
+            for (Sprite s : sprites) {
+                s.setX(Math.floorMod(s.getX() + rand.nextInt(-8, 9), 800));
+                s.setY(Math.floorMod(s.getY() + rand.nextInt(-8, 9), 800));
+            }
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testTouchingBoxesPair() {
+        SweepAndPrune world = new SweepAndPrune();
+        Player player = new Player(100, 100, 25, BOUNDS, NO_DRAG, Color.BLUE);
+        Ammo ammo = new Ammo(200, 100, 10, BOUNDS, NO_DRAG);
+
+        world.add(player, 0);
+        world.add(ammo, 1);
+        world.update();
+        assertEquals(0, world.getPairCount());
+
+        ammo.setX(100 + player.shape.maxX - ammo.shape.minX);
+        world.update();
+        assertEquals(1, world.getPairCount());
+
+        ammo.setX(ammo.getX() + 1);
+        world.update();
+        assertEquals(0, world.getPairCount());
+    }
+
+    private static Set<String> expected(Sprite[] sprites) {
+        Set<String> pairs = new HashSet<>();
+
+        for (int i = 0; i < sprites.length; i++) {
+            for (int j = i + 1; j < sprites.length; j++) {
+                final Sprite a = sprites[i];
+                final Sprite b = sprites[j];
+
+                if (((i % 3 == 0) != (j % 3 == 0)) &&
+                        (a.getX() + a.shape.minX <= b.getX() + b.shape.maxX) &&
+                        (b.getX() + b.shape.minX <= a.getX() + a.shape.maxX) &&
+                        (a.getY() + a.shape.minY <= b.getY() + b.shape.maxY) &&
+                        (b.getY() + b.shape.minY <= a.getY() + a.shape.maxY)) {
+                    pairs.add(System.identityHashCode(a) + ":" + System.identityHashCode(b));
+                }
+            }
+        }
+
+        return pairs;
+    }
+
+    private static Set<String> actual(SweepAndPrune world) {
+        Set<String> pairs = new HashSet<>();
+
+        world.forEachPair((a, b) -> assertTrue(pairs.add(System.identityHashCode(a) + ":" + System.identityHashCode(b))));
+
+        return pairs;
+    }
+}
@@ -0,0 +1,85 @@
+package templedf;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickMetricsTest {
+    @org.junit.jupiter.api.Test
+    void testEngineRecordsEveryPhase() {
+        final TickMetrics metrics = new TickMetrics();
+        final Engine engine = new Engine(3L, 100);
+        final InputFrame frame = new InputFrame(2);
+
+        engine.setMetrics(metrics);
+
+        for (int t = 0; t < 1000; t++) {
+            if (engine.isRoundOver()) {
+                engine.restart();
+            }
+
+            frame.set(0, (byte)(t % 200 < 100 ? 0x16 : 0x14));
+            frame.set(1, (byte)(t % 300 < 150 ? 0x15 : 0x14));
+            engine.tick(frame);
+        }
+
+        assertEquals(1000, metrics.getTicks());
+        assertTrue(metrics.getCandidatePairs() > 0);
+        assertTrue(metrics.getNarrowphaseTests() <= metrics.getCandidatePairs());
+        assertTrue(metrics.getBoxRejects() + metrics.getCircleRejects() + metrics.getSatRejects() <=
+                metrics.getNarrowphaseTests());
+        assertEquals(metrics.getSatTests(), metrics.getNarrowphaseTests() - metrics.getBoxRejects() -
+                metrics.getCircleRejects());
+        assertTrue(metrics.getPickups() > 0);
+        assertEquals(engine.getScore(0) + engine.getScore(1), metrics.getHits());
+
+        final Map<String, TickMetrics.PhaseStatistics> phases = metrics.getPhases();
+
+        for (TickMetrics.Phase phase : new TickMetrics.Phase[] {TickMetrics.Phase.PLAYERS, TickMetrics.Phase.AMMO,
+                TickMetrics.Phase.BROADPHASE, TickMetrics.Phase.NARROWPHASE, TickMetrics.Phase.PICKUPS}) {
+            final TickMetrics.PhaseStatistics statistics = phases.get(phase.name());
+
+            assertEquals(1000, statistics.getCount(), phase.name());
+            assertTrue(statistics.getP50Nanos() <= statistics.getP99Nanos());
+            assertTrue(statistics.getP99Nanos() <= statistics.getMaxNanos());
+        }
+
+        // The engine doesn't see the input or the renderer
+        assertEquals(0, phases.get(TickMetrics.Phase.INPUT.name()).getCount());
+        engine.setMetrics(null);
+        engine.tick(frame);
+        assertEquals(1000, metrics.getTicks());
+    }
+
+    @org.junit.jupiter.api.Test
+    void testJmx() throws Exception {
+        final TickMetrics metrics = new TickMetrics().register("test");
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName("templedf:type=TickMetrics,name=" + ObjectName.quote("test"));
+
+        try {
+            metrics.record(TickMetrics.Phase.INPUT, System.nanoTime() - 1000);
+            metrics.countTick(10, 4, 2, 1, 0, 1, 2);
+
+            assertEquals(1L, server.getAttribute(name, "Ticks"));
+            assertEquals(6L, server.getAttribute(name, "RejectedPairs"));
+            assertEquals(1L, server.getAttribute(name, "SatTests"));
+            assertEquals(0.5, (Double) server.getAttribute(name, "BoxRejectRate"), 1e-9);
+
+            final TabularData phases = (TabularData) server.getAttribute(name, "Phases");
+            final CompositeData input = (CompositeData) phases.get(new Object[] {"INPUT"}).get("value");
+
+            assertEquals(1L, input.get("count"));
+            assertTrue((Long) input.get("maxNanos") >= 1000);
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, server.getAttribute(name, "Ticks"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}